@@ -0,0 +1,333 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless benchmark harness covering every Autocompletor implementation,
+ * laid out the way a JMH run is: each benchmark runs warmup iterations that
+ * are thrown away and then measured iterations, over every combination of
+ * the parameters, and the results are written as JSON in the shape JMH's
+ * -rf json produces so that runs can be compared for regressions.
+ *
+ * Benchmarks, all in average time per operation:
+ * <ul>
+ * <li>construct - building the index from the loaded terms</li>
+ * <li>topMatch - topMatch on a random prefix of a dictionary word</li>
+ * <li>topMatches - topMatches(prefix, k) on the same prefixes</li>
+ * <li>topMatchesWithWeights - the same, with weights, into a reused
+ * buffer</li>
+ * <li>weightOf - weightOf on a random dictionary word</li>
+ * <li>parallelConstruct - building a TrieAutocomplete on a fork-join pool
+ * of each -threads size, reported with its speedup over the first size</li>
+ * </ul>
+ *
+ * Usage, every argument optional:
+ *
+ * <pre>
+ * java AutocompleteBenchmarkSuite -impl TrieAutocomplete,BinarySearchAutocomplete
+ *     -data data/words-333333.txt -prefix 0,1,2,4 -k 1,10 -threads 1,2,4 -wi 3 -i 5 -rff results.json
+ * </pre>
+ */
+public class AutocompleteBenchmarkSuite {
+
+	/**
+	 * Written to on every operation so the JIT cannot discard the calls.
+	 */
+	public static volatile long ourSink;
+
+	private static final int QUERIES = 1024;
+
+	private List<String> myImplementations = new ArrayList<String>(
+			Arrays.asList("BruteAutocomplete", "BinarySearchAutocomplete", "TrieAutocomplete"));
+	private List<String> myDataFiles = new ArrayList<String>(Arrays.asList("data/words-333333.txt"));
+	private int[] myPrefixLengths = { 0, 1, 2, 4 };
+	private int[] myKs = { 1, 10 };
+	private int[] myThreadCounts = Runtime.getRuntime().availableProcessors() > 1
+			? new int[] { 1, Runtime.getRuntime().availableProcessors() } : new int[] { 1 };
+	private int myWarmups = 3;
+	private int myIterations = 5;
+	private long myIterationNanos = 1000000000L;
+	private String myResultFile = "benchmark-results.json";
+
+	private final List<Map<String, Object>> myResults = new ArrayList<Map<String, Object>>();
+
+	public static void main(String[] args) throws Exception {
+		AutocompleteBenchmarkSuite suite = new AutocompleteBenchmarkSuite();
+		suite.parseArguments(args);
+		suite.run();
+	}
+
+	private void parseArguments(String[] args) {
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "-impl":
+				myImplementations = Arrays.asList(value.split(","));
+				break;
+			case "-data":
+				myDataFiles = Arrays.asList(value.split(","));
+				break;
+			case "-prefix":
+				myPrefixLengths = parseInts(value);
+				break;
+			case "-k":
+				myKs = parseInts(value);
+				break;
+			case "-threads":
+				myThreadCounts = parseInts(value);
+				break;
+			case "-wi":
+				myWarmups = Integer.parseInt(value);
+				break;
+			case "-i":
+				myIterations = Integer.parseInt(value);
+				break;
+			case "-r":
+				myIterationNanos = (long) (Double.parseDouble(value) * 1E9);
+				break;
+			case "-rff":
+				myResultFile = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+	}
+
+	private static int[] parseInts(String list) {
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+
+	private void run() throws Exception {
+		for (String data : myDataFiles) {
+			TermFileLoader loader = TermFileLoader.load(new File(data));
+			final String[] terms = loader.getTerms();
+			final double[] weights = loader.getWeights();
+			for (final String impl : myImplementations) {
+				Map<String, String> params = params(impl, data);
+				measure("construct", params, new Operation() {
+					public long run(int i) throws Exception {
+						return AutocompleteMain.create(impl, terms, weights).hashCode();
+					}
+				}, 1);
+				final Autocompletor auto = AutocompleteMain.create(impl, terms, weights);
+				final String[] words = sample(terms, Integer.MAX_VALUE);
+				measure("weightOf", params, new Operation() {
+					public long run(int i) {
+						return (long) auto.weightOf(words[i % QUERIES]);
+					}
+				}, QUERIES);
+				for (int length : myPrefixLengths) {
+					final String[] prefixes = sample(terms, length);
+					Map<String, String> prefixParams = new LinkedHashMap<String, String>(params);
+					prefixParams.put("prefixLength", length + "");
+					measure("topMatch", prefixParams, new Operation() {
+						public long run(int i) {
+							return auto.topMatch(prefixes[i % QUERIES]).length();
+						}
+					}, QUERIES);
+					for (final int k : myKs) {
+						Map<String, String> kParams = new LinkedHashMap<String, String>(prefixParams);
+						kParams.put("k", k + "");
+						measure("topMatches", kParams, new Operation() {
+							public long run(int i) {
+								long count = 0;
+								for (String match : auto.topMatches(prefixes[i % QUERIES], k))
+									count += match.length();
+								return count;
+							}
+						}, QUERIES);
+						final WeightedMatches buffer = new WeightedMatches(k);
+						measure("topMatchesWithWeights", kParams, new Operation() {
+							public long run(int i) {
+								auto.topMatchesWithWeights(prefixes[i % QUERIES], k, buffer);
+								return buffer.size();
+							}
+						}, QUERIES);
+					}
+				}
+			}
+			measureParallelConstruct(data, terms, weights);
+		}
+		writeResults();
+		System.out.println("Results written to " + myResultFile);
+	}
+
+	/**
+	 * Times building a TrieAutocomplete in parallel on a pool of each thread
+	 * count, and records each one's speedup over the first count.
+	 */
+	private void measureParallelConstruct(String data, final String[] terms, final double[] weights)
+			throws Exception {
+		double baseline = 0;
+		for (int threads : myThreadCounts) {
+			final ForkJoinPool pool = new ForkJoinPool(threads);
+			Map<String, String> params = params(AutocompleteMain.TRIE_AUTOCOMPLETE, data);
+			params.put("threads", threads + "");
+			double score;
+			try {
+				score = measure("parallelConstruct", params, new Operation() {
+					public long run(int i) {
+						return new TrieAutocomplete(terms, weights, pool).hashCode();
+					}
+				}, 1);
+			} finally {
+				pool.shutdown();
+			}
+			if (baseline == 0)
+				baseline = score;
+			Map<String, Object> speedup = new LinkedHashMap<String, Object>();
+			speedup.put("score", baseline / score);
+			speedup.put("scoreUnit", "x");
+			myResults.get(myResults.size() - 1).put("secondaryMetrics",
+					Collections.singletonMap("speedup", speedup));
+			System.out.printf("%-22s %-60s %12.2f x%n", "speedup", params.values(), baseline / score);
+		}
+	}
+
+	private static Map<String, String> params(String impl, String data) {
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("implementation", impl);
+		params.put("data", data);
+		return params;
+	}
+
+	/**
+	 * QUERIES prefixes of random terms, each cut to length characters or
+	 * kept whole if shorter. The seed is fixed so runs see the same queries.
+	 */
+	private static String[] sample(String[] terms, int length) {
+		Random random = new Random(1234);
+		String[] queries = new String[QUERIES];
+		for (int i = 0; i < QUERIES; i++) {
+			String term = terms.length == 0 ? "" : terms[random.nextInt(terms.length)];
+			queries[i] = term.substring(0, Math.min(length, term.length()));
+		}
+		return queries;
+	}
+
+	/**
+	 * One benchmarked call; i counts calls so queries can be cycled through.
+	 */
+	private interface Operation {
+		long run(int i) throws Exception;
+	}
+
+	/**
+	 * Runs op for the warmup and measured iterations and records the average
+	 * time per call of each measured iteration, in microseconds. An
+	 * iteration repeats op until at least myIterationNanos have passed,
+	 * checking the clock only every batch calls. Returns the average.
+	 */
+	private double measure(String benchmark, Map<String, String> params, Operation op, int batch) throws Exception {
+		double[] scores = new double[myIterations];
+		for (int iteration = -myWarmups; iteration < myIterations; iteration++) {
+			long calls = 0;
+			long sink = 0;
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				for (int i = 0; i < batch; i++)
+					sink += op.run(i);
+				calls += batch;
+				elapsed = System.nanoTime() - start;
+			} while (elapsed < myIterationNanos);
+			ourSink += sink;
+			if (iteration >= 0)
+				scores[iteration] = elapsed / 1E3 / calls;
+		}
+		double mean = 0;
+		for (double score : scores)
+			mean += score;
+		mean /= scores.length;
+		double variance = 0;
+		for (double score : scores)
+			variance += (score - mean) * (score - mean);
+		double error = scores.length > 1 ? 2 * Math.sqrt(variance / (scores.length - 1) / scores.length) : 0;
+
+		Map<String, Object> metric = new LinkedHashMap<String, Object>();
+		metric.put("score", mean);
+		metric.put("scoreError", error);
+		metric.put("scoreUnit", "us/op");
+		metric.put("rawData", Collections.singletonList(scores));
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("benchmark", "AutocompleteBenchmarkSuite." + benchmark);
+		result.put("mode", "avgt");
+		result.put("warmupIterations", myWarmups);
+		result.put("measurementIterations", myIterations);
+		result.put("params", params);
+		result.put("primaryMetric", metric);
+		myResults.add(result);
+		System.out.printf("%-22s %-60s %12.3f +- %.3f us/op%n", benchmark, params.values(), mean, error);
+		return mean;
+	}
+
+	private void writeResults() throws IOException {
+		try (PrintWriter out = new PrintWriter(
+				new OutputStreamWriter(new FileOutputStream(myResultFile), StandardCharsets.UTF_8))) {
+			StringBuilder json = new StringBuilder();
+			appendJson(json, myResults);
+			out.println(json);
+		}
+	}
+
+	private static void appendJson(StringBuilder json, Object value) {
+		if (value instanceof Map) {
+			json.append('{');
+			String separator = "";
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				json.append(separator);
+				appendJson(json, entry.getKey().toString());
+				json.append(':');
+				appendJson(json, entry.getValue());
+				separator = ",";
+			}
+			json.append('}');
+		} else if (value instanceof List) {
+			json.append('[');
+			String separator = "";
+			for (Object item : (List<?>) value) {
+				json.append(separator);
+				appendJson(json, item);
+				separator = ",";
+			}
+			json.append(']');
+		} else if (value instanceof double[]) {
+			json.append('[');
+			String separator = "";
+			for (double item : (double[]) value) {
+				json.append(separator).append(item);
+				separator = ",";
+			}
+			json.append(']');
+		} else if (value instanceof Number) {
+			json.append(value);
+		} else {
+			json.append('"');
+			for (char c : value.toString().toCharArray()) {
+				if (c == '"' || c == '\\')
+					json.append('\\').append(c);
+				else if (c < ' ')
+					json.append(String.format("\\u%04x", (int) c));
+				else
+					json.append(c);
+			}
+			json.append('"');
+		}
+	}
+}
@@ -44,15 +44,11 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.LinkedList;
 import java.util.Locale;
-import java.util.Queue;
-import java.util.Scanner;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -139,7 +135,9 @@ public class AutocompleteGUI extends JFrame {
 	private class AutocompletePanel extends JPanel {
 		private final JTextField searchText;
 		private Autocompletor auto;
+		private AutocompleteSession session;
 		private String[] results = new String[k];
+		private final WeightedMatches matches = new WeightedMatches(k);
 		private JList<String> suggestions;
 
 		// keep these two values in sync! - used to keep the listbox the same
@@ -151,28 +149,21 @@ public class AutocompleteGUI extends JFrame {
 			super();
 
 			// read in the data
-			Scanner in;
 			try {
-				in = new Scanner(new File(filename), CHARSET);
-				in.useLocale(LOCALE);
-				int N = Integer.parseInt(in.nextLine());
-				String[] terms = new String[N];
-				double[] weights = new double[N];
-				for (int i = 0; i < N; i++) {
-					String line = in.nextLine();
-					int tab = line.indexOf('\t');
-					weights[i] = Double.parseDouble(line.substring(0, tab).trim());
-					terms[i] = line.substring(tab + 1);
-				}
+				TermFileLoader loader = TermFileLoader.load(new File(filename));
+				String[] terms = loader.getTerms();
+				double[] weights = loader.getWeights();
 				// create the autocomplete object
 				auto = (Autocompletor) Class.forName(autocompletorClassName)
 						.getDeclaredConstructor(String[].class, double[].class).newInstance(terms, weights);
+				// keystrokes resume from the previous prefix instead of the root
+				session = auto.newSession();
 
 			} catch (InstantiationException | IllegalAccessException | ClassNotFoundException | IllegalArgumentException
 					| InvocationTargetException | NoSuchMethodException | SecurityException e1) {
 				e1.printStackTrace();
 				System.exit(1);
-			} catch (FileNotFoundException e2) {
+			} catch (IOException e2) {
 				System.out.println("Cannot read file " + filename);
 				System.exit(1);
 
@@ -336,23 +327,21 @@ public class AutocompleteGUI extends JFrame {
 				suggestions.setVisible(false);
 			} else {
 				int textLen = text.length();
-				Queue<String> resultQ = new LinkedList<String>();
-				Queue<Double> ds = new LinkedList<Double>();
-				for (String term : auto.topMatches(text.toLowerCase(), k)) {
-					resultQ.add(term);
-					ds.add(auto.weightOf(term));
-				}
-				if (!resultQ.isEmpty()) {
-					results = new String[resultQ.size()];
+				// one traversal, from where the previous keystroke left off,
+				// returns each term together with its weight
+				session.setText(text.toLowerCase());
+				session.topMatchesWithWeights(k, matches);
+				if (matches.size() > 0) {
+					results = new String[matches.size()];
 					for (int i = 0; i < results.length; i++) {
-						results[i] = resultQ.remove();
+						results[i] = matches.term(i);
 						/*
 						 * Modified to include the weights of each term and a
 						 * delimiter "|" to ensure that the search does not
 						 * include the weight.
 						 */
 						results[i] = "<html>" + results[i].substring(0, textLen) + "<b>" + results[i].substring(textLen)
-								+ "</b>" + "|<span style=\"color:#C0C0C0;\">" + ds.remove() + "</span></html>";
+								+ "</b>" + "|<span style=\"color:#C0C0C0;\">" + matches.weight(i) + "</span></html>";
 					}
 					suggestions.setListData(results);
 					suggestions.setVisible(true);
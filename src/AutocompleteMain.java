@@ -16,10 +16,23 @@ public class AutocompleteMain {
 	final static String BRUTE_AUTOCOMPLETE = "BruteAutocomplete";
 	final static String BINARY_SEARCH_AUTOCOMPLETE = "BinarySearchAutocomplete";
 	final static String TRIE_AUTOCOMPLETE = "TrieAutocomplete";
+	final static String RADIX_TRIE_AUTOCOMPLETE = "RadixTrieAutocomplete";
+	final static String PARALLEL_BRUTE_AUTOCOMPLETE = "ParallelBruteAutocomplete";
+	final static String DOUBLE_ARRAY_TRIE_AUTOCOMPLETE = "DoubleArrayTrieAutocomplete";
+	final static String LOUDS_TRIE_AUTOCOMPLETE = "LoudsTrieAutocomplete";
 
 	/* Modify name of Autocompletor implementation as necessary */
 	final static String AUTOCOMPLETOR_CLASS_NAME = BINARY_SEARCH_AUTOCOMPLETE;
 
+	/**
+	 * Creates the named Autocompletor through its (String[], double[])
+	 * constructor, as AutocompleteGUI does.
+	 */
+	public static Autocompletor create(String className, String[] terms, double[] weights) throws Exception {
+		return (Autocompletor) Class.forName(className).getDeclaredConstructor(String[].class, double[].class)
+				.newInstance(terms, weights);
+	}
+
 	public static void main(String[] args) {
 		String filename = null;
 		if (args.length >= 2) {
@@ -0,0 +1,121 @@
+/**
+ * The text being typed into one search box, answering queries for it as it
+ * changes one character at a time. An index can remember where the current
+ * prefix led, so typing a character narrows from there instead of starting
+ * over, and backspace returns to the position remembered for the shorter
+ * prefix. Obtain one from Autocompletor.newSession().
+ *
+ * A session is meant for one thread. Sessions of an index that can be
+ * modified, like TrieAutocomplete, must not be used after it changes.
+ */
+public abstract class AutocompleteSession {
+
+	private final StringBuilder myText = new StringBuilder();
+
+	/**
+	 * Adds ch to the end of the text.
+	 */
+	public final void append(char ch) {
+		myText.append(ch);
+		pushed(ch);
+	}
+
+	/**
+	 * Removes the last character of the text, if there is one.
+	 */
+	public final void backspace() {
+		if (myText.length() == 0)
+			return;
+		myText.setLength(myText.length() - 1);
+		popped();
+	}
+
+	/**
+	 * Changes the text to text, keeping whatever prefix it shares with the
+	 * current text, so editing the end of a long text costs only the
+	 * characters that changed.
+	 *
+	 * @throws NullPointerException
+	 *             if text is null
+	 */
+	public final void setText(String text) {
+		int common = 0;
+		int limit = Math.min(text.length(), myText.length());
+		while (common < limit && text.charAt(common) == myText.charAt(common))
+			common++;
+		while (myText.length() > common)
+			backspace();
+		for (int i = common; i < text.length(); i++)
+			append(text.charAt(i));
+	}
+
+	/**
+	 * Returns the current text.
+	 */
+	public final String getText() {
+		return myText.toString();
+	}
+
+	/**
+	 * Number of characters in the current text.
+	 */
+	public final int length() {
+		return myText.length();
+	}
+
+	/**
+	 * Called after ch is appended, to move the remembered position forward.
+	 */
+	protected abstract void pushed(char ch);
+
+	/**
+	 * Called after a character is removed, to return to the position
+	 * remembered for the shorter text.
+	 */
+	protected abstract void popped();
+
+	/**
+	 * topMatches(getText(), k) on the session's index.
+	 */
+	public abstract Iterable<String> topMatches(int k);
+
+	/**
+	 * topMatch(getText()) on the session's index.
+	 */
+	public abstract String topMatch();
+
+	/**
+	 * topMatchesWithWeights(getText(), k, buffer) on the session's index.
+	 */
+	public abstract WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer);
+
+	/**
+	 * A session that remembers nothing and queries auto with the whole text
+	 * each time, for indexes that cannot resume from a position.
+	 */
+	static class Requery extends AutocompleteSession {
+		private final Autocompletor myAuto;
+
+		Requery(Autocompletor auto) {
+			myAuto = auto;
+		}
+
+		protected void pushed(char ch) {
+		}
+
+		protected void popped() {
+		}
+
+		public Iterable<String> topMatches(int k) {
+			return myAuto.topMatches(getText(), k);
+		}
+
+		public String topMatch() {
+			return myAuto.topMatch(getText());
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			return myAuto.topMatchesWithWeights(getText(), k, buffer);
+		}
+	}
+}
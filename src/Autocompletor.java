@@ -1,7 +1,21 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  * An Autocompletor supports returning either the top k best matches, or the
  * single top match, given a String prefix.
  * 
+ * Queries never change an Autocompletor, and the implementations here keep
+ * any per-query scratch state (heaps, buffers) local to the call. Once an
+ * implementation has been safely published to other threads it may be
+ * queried concurrently, unless it documents methods that modify it.
+ * 
  * @author Austin Lu
  *
  */
@@ -26,4 +40,87 @@ public interface Autocompletor {
 	 */
 	public double weightOf(String term);
 
+	/**
+	 * Clears buffer, fills it with the top k matching terms and their weights
+	 * in descending order of weight, as topMatches would return them, and
+	 * returns it. Reusing one buffer across queries saves allocating results,
+	 * and implementations read each weight off the match itself rather than
+	 * looking every term up again.
+	 * 
+	 * This default calls topMatches and then weightOf for every match, which
+	 * repeats a lookup per term; implementations should override it.
+	 */
+	public default WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		buffer.clear();
+		for (String term : topMatches(prefix, k))
+			buffer.add(term, weightOf(term));
+		return buffer;
+	}
+
+	/**
+	 * Returns a new session for typing a prefix one character at a time. This
+	 * default re-runs every query with the session's whole text;
+	 * implementations that can resume a search from the previous prefix
+	 * should return a session that does.
+	 */
+	public default AutocompleteSession newSession() {
+		return new AutocompleteSession.Requery(this);
+	}
+
+	/**
+	 * Returns every term starting with prefix, in descending order of weight,
+	 * computed lazily as the iterator is advanced, for callers that stop once
+	 * they have enough matches or fetch more on demand. The first element
+	 * should cost no more than topMatch.
+	 * 
+	 * This default re-runs topMatches with k doubling each time the previous
+	 * batch runs out, so reading m matches costs about as much as
+	 * topMatches(prefix, 2m). Implementations with a best-first search should
+	 * drive the iterator from the search itself.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public default Iterator<String> matchIterator(final String prefix) {
+		if (prefix == null)
+			throw new NullPointerException();
+		return new Iterator<String>() {
+			private List<String> myBatch = new ArrayList<String>();
+			private int myNext;
+			private int myK;
+			private boolean isExhausted;
+
+			public boolean hasNext() {
+				if (myNext < myBatch.size())
+					return true;
+				if (isExhausted)
+					return false;
+				myK = myK == 0 ? 8 : 2 * myK;
+				myBatch.clear();
+				for (String match : topMatches(prefix, myK))
+					myBatch.add(match);
+				isExhausted = myBatch.size() < myK;
+				return myNext < myBatch.size();
+			}
+
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return myBatch.get(myNext++);
+			}
+		};
+	}
+
+	/**
+	 * Returns matchIterator(prefix) as a sequential, ordered Stream, so that
+	 * for example matchStream(prefix).limit(k) reads only k matches.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public default Stream<String> matchStream(String prefix) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matchIterator(prefix),
+				Spliterator.ORDERED | Spliterator.NONNULL), false);
+	}
+
 }
@@ -1,18 +1,28 @@
 import java.io.File;
 import java.io.IOException;
-import java.util.Locale;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
 import java.util.Random;
-import java.util.Scanner;
 
 import javax.swing.JFileChooser;
 
 public class AutocompletorBenchmark {
 
 	public static Random ourRandom = new Random(1234);
-	public static final String CHARSET = "UTF-8";
-	public static final Locale LOCALE = Locale.US;
+
+	/**
+	 * Implementation to benchmark; the second command-line argument
+	 * overrides it.
+	 */
+	public static String ourClassName = AutocompleteMain.TRIE_AUTOCOMPLETE;
+
 	public static Autocompletor getInstance(String[] words, double[] weights) {
-		return new TrieAutocomplete(words, weights);
+		try {
+			return AutocompleteMain.create(ourClassName, words, weights);
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Cannot create " + ourClassName, e);
+		}
 	}
 	// chooser allows users to select a file by navigating through
 	// directories
@@ -22,13 +32,12 @@ public class AutocompletorBenchmark {
 	/**
 	 * Brings up chooser for user to select a file
 	 * 
-	 * @return Scanner for user selected file, null if file not found
+	 * @return user selected file, null if none was chosen or it is unreadable
 	 */
-	public static Scanner getScanner() {
+	public static File getFile() {
 		int retval = ourChooser.showOpenDialog(null);
 		if (retval == JFileChooser.APPROVE_OPTION) {
 			File f = ourChooser.getSelectedFile();
-			Scanner s;
 			try {
 				if (f.canRead()) {
 					System.out.println("Opening - " +  f.getCanonicalPath() + ".");
@@ -36,57 +45,134 @@ public class AutocompletorBenchmark {
 					System.out.println("Could not open selected file.");
 					return null;
 				}
-				s = new Scanner(f, CHARSET);
-				s.useLocale(LOCALE);
-				
 			} catch (IOException e) {
 				return null;
 			}
-			return s;
+			return f;
 		}
 		return null;
 	}
 
 	public static long countNodes(Node root) {
 		long result = 1;
-		for (Node child : root.children.values())
-			result += countNodes(child);
+		for (int i = 0; i < root.childCount; i++)
+			result += countNodes(root.childNodes[i]);
+		return result;
+	}
+
+	/**
+	 * Estimated bytes of Node objects and child arrays in the trie rooted at
+	 * root, assuming a 12-byte object header, 4-byte references and 8-byte
+	 * alignment. A Node's fields take 47 bytes, so each node costs 64 bytes
+	 * plus its child arrays; cached top word lists are not counted.
+	 */
+	public static long estimateNodeBytes(Node root) {
+		long result = 0;
+		ArrayList<Node> pending = new ArrayList<Node>();
+		pending.add(root);
+		while (!pending.isEmpty()) {
+			Node node = pending.remove(pending.size() - 1);
+			result += align(12 + 47);
+			if (node.childKeys.length > 0)
+				result += align(16 + 2L * node.childKeys.length) + align(16 + 4L * node.childNodes.length);
+			for (int i = 0; i < node.childCount; i++)
+				pending.add(node.childNodes[i]);
+		}
 		return result;
 	}
 
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/**
+	 * Bytes allocated so far by the calling thread, or -1 if this JVM cannot
+	 * report per-thread allocation.
+	 */
+	public static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Heap currently in use, measured after asking for a full collection so
+	 * that consecutive readings can be subtracted to size a structure.
+	 */
+	public static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
 		public static void main(String[] args) {
 		
-		Scanner in = null;
-		do {
-			in = getScanner();
-			
-		} while (in == null);
+		// java AutocompletorBenchmark [file [className]] runs without a chooser
+		File file = null;
+		if (args.length >= 1)
+			file = new File(args[0]);
+		if (args.length >= 2)
+			ourClassName = args[1];
+		while (file == null) {
+			file = getFile();
+		}
 		
 		int N = 0;
 		String[] terms = null;
 		double[] weights = null;
+		long loadStart = System.nanoTime();
 		try {
-			N = Integer.parseInt(in.nextLine());
-			terms = new String[N];
-			weights = new double[N];
-
-			for (int i = 0; i < N; i++) {
-				String line = in.nextLine();
-				int tab = line.indexOf('\t');
-				weights[i] = Double.parseDouble(line.substring(0, tab).trim());
-				terms[i] = line.substring(tab + 1).toLowerCase();
-			}
-		} catch (Exception e) { //could be any parsing related exception
+			TermFileLoader loader = TermFileLoader.load(file);
+			terms = loader.getTerms();
+			weights = loader.getWeights();
+			N = terms.length;
+			for (int i = 0; i < N; i++)
+				terms[i] = terms[i].toLowerCase();
+		} catch (IOException e) { //could be any parsing related exception
 			System.err.println("File is malformatted");
 			System.exit(0);
 		}
+		System.out.println("Time to load - " + (System.nanoTime() - loadStart) / 1E9);
+		int cores = Runtime.getRuntime().availableProcessors();
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			loadStart = System.nanoTime();
+			try {
+				TermFileLoader.load(file, threads);
+			} catch (IOException e) {
+				System.err.println("File is malformatted");
+				System.exit(0);
+			}
+			System.out.println("Time to load with " + threads + " threads - " + (System.nanoTime() - loadStart) / 1E9);
+		}
+		long heapBefore = usedHeap();
 		long startTime = System.nanoTime();
 		Autocompletor auto = getInstance(terms, weights);
 		System.out.println("Benchmarking " + auto.getClass().getName() + "...");
 		System.out.println("Found " + N + " words");
 		System.out.println("Time to initialize - " + (System.nanoTime() - startTime) / 1E9);
-		if (auto instanceof TrieAutocomplete)
-			System.out.println("Created " + countNodes(((TrieAutocomplete) auto).myRoot) + " nodes");
+		long heapBytes = usedHeap() - heapBefore;
+		System.out.println("Heap used by index - " + heapBytes + " bytes");
+		if (N > 0)
+			System.out.println("Heap per term - " + heapBytes / N + " bytes");
+		if (auto instanceof TrieAutocomplete) {
+			long nodes = countNodes(((TrieAutocomplete) auto).myRoot);
+			System.out.println("Created " + nodes + " nodes");
+			System.out.println("Heap per node - " + heapBytes / nodes + " bytes");
+			System.out.println("Estimated bytes per node - "
+					+ estimateNodeBytes(((TrieAutocomplete) auto).myRoot) / nodes + " bytes");
+		}
+		if (auto instanceof DoubleArrayTrieAutocomplete) {
+			DoubleArrayTrieAutocomplete trie = (DoubleArrayTrieAutocomplete) auto;
+			System.out.println("Created " + trie.getStateCount() + " states in " + trie.getCellCount() + " cells");
+			System.out.println("Heap per state - " + heapBytes / trie.getStateCount() + " bytes");
+		}
+		if (auto instanceof LoudsTrieAutocomplete) {
+			LoudsTrieAutocomplete trie = (LoudsTrieAutocomplete) auto;
+			System.out.println("Created " + trie.getNodeCount() + " nodes in " + trie.getIndexBytes() + " bytes of arrays");
+			System.out.println("Heap per node - " + (double) heapBytes / trie.getNodeCount() + " bytes");
+		}
 		String randomWord = "";
 		while (randomWord.length() <= 2)
 			randomWord = terms[ourRandom.nextInt(terms.length)];
@@ -94,6 +180,21 @@ public class AutocompletorBenchmark {
 		String randomPrefix2 = randomWord.substring(0, 2);
 		String[] queries = { "", randomWord, randomPrefix1, randomPrefix2, "notarealword" };
 		int trial;
+		startTime = System.nanoTime();
+		for (trial = 0; trial < 1000; trial++) {
+			auto.weightOf(randomWord);
+			if (System.nanoTime() - startTime > 5E9)
+				break;
+		}
+		System.out.println(
+				"Time for weightOf(\"" + randomWord + "\") - " + (System.nanoTime() - startTime) / (1E9 * trial));
+		// calls are warm by now, so what remains is what each lookup allocates
+		long allocated = allocatedBytes();
+		for (trial = 0; trial < 1000; trial++)
+			auto.weightOf(randomWord);
+		if (allocated >= 0)
+			System.out.println("Bytes allocated per weightOf(\"" + randomWord + "\") - "
+					+ (allocatedBytes() - allocated) / (double) trial);
 		for (String query : queries) {
 			startTime = System.nanoTime();
 			for (trial = 0; trial < 1000; trial++) {
@@ -103,17 +204,50 @@ public class AutocompletorBenchmark {
 			}
 			System.out.println(
 					"Time for topMatch(\"" + query + "\") - " + (System.nanoTime() - startTime) / (1E9 * trial));
+			allocated = allocatedBytes();
+			for (trial = 0; trial < 1000; trial++)
+				auto.topMatch(query);
+			if (allocated >= 0)
+				System.out.println("Bytes allocated per topMatch(\"" + query + "\") - "
+						+ (allocatedBytes() - allocated) / (double) trial);
 		}
 		for (String query : queries) {
 			for (int k = 1; k <= 7; k += 3) {
 				startTime = System.nanoTime();
 				for (trial = 0; trial < 1000; trial++) {
-					auto.topMatches(query, 3);
+					auto.topMatches(query, k);
 					if (System.nanoTime() - startTime > 5E9)
 						break;
 				}
 				System.out.println("Time for topKMatches(\"" + query + "\", " + k + ")" + " - " + " "
 						+ (System.nanoTime() - startTime) / (1E9 * trial));
+				// the same query with weights, into one reused buffer
+				WeightedMatches buffer = new WeightedMatches(k);
+				startTime = System.nanoTime();
+				for (trial = 0; trial < 1000; trial++) {
+					auto.topMatchesWithWeights(query, k, buffer);
+					if (System.nanoTime() - startTime > 5E9)
+						break;
+				}
+				System.out.println("Time for topMatchesWithWeights(\"" + query + "\", " + k + ")" + " - " + " "
+						+ (System.nanoTime() - startTime) / (1E9 * trial));
+			}
+		}
+		if (auto instanceof TrieAutocomplete) {
+			TrieAutocomplete trie = (TrieAutocomplete) auto;
+			// one substituted letter, so the word is usually not in the dictionary
+			char[] typo = randomWord.toCharArray();
+			typo[typo.length / 2] = typo[typo.length / 2] == 'x' ? 'y' : 'x';
+			String misspelled = new String(typo);
+			for (int dist = 1; dist <= 2; dist++) {
+				startTime = System.nanoTime();
+				for (trial = 0; trial < 1000; trial++) {
+					trie.spellCheck(misspelled, dist, 10);
+					if (System.nanoTime() - startTime > 5E9)
+						break;
+				}
+				System.out.println("Time for spellCheck(\"" + misspelled + "\", " + dist + ", 10) - "
+						+ (System.nanoTime() - startTime) / (1E9 * trial));
 			}
 		}
 	}
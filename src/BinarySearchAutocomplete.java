@@ -2,19 +2,38 @@ import java.util.*;
 
 /**
  * 
- * Using a sorted array of Term objects, this implementation uses binary search
- * to find the top term(s).
+ * Using a sorted array of words, this implementation uses binary search to
+ * find the top term(s). Words and weights are kept in parallel arrays rather
+ * than as Term objects, so a probe touches one String and weight scans touch
+ * a contiguous double[].
+ * 
+ * Instances are immutable once constructed: every field is final and no
+ * method writes to the arrays, so one index can serve queries from any
+ * number of threads without locking.
  * 
  * @author Austin Lu, adapted from Kevin Wayne
  * @author Jeff Forbes
  */
 public class BinarySearchAutocomplete implements Autocompletor {
 
-	Term[] myTerms;
+	/**
+	 * Every word, sorted lexicographically
+	 */
+	final String[] myWords;
 
 	/**
-	 * Given arrays of words and weights, initialize myTerms to a corresponding
-	 * array of Terms sorted lexicographically.
+	 * myWeights[i] is the weight of myWords[i]
+	 */
+	final double[] myWeights;
+
+	/**
+	 * Range-maximum index over myWeights
+	 */
+	final RangeMaxIndex myIndex;
+
+	/**
+	 * Given arrays of words and weights, initialize myWords and myWeights to
+	 * the terms sorted lexicographically.
 	 * 
 	 * This constructor is written for you, but you may make modifications to
 	 * it.
@@ -24,21 +43,41 @@ public class BinarySearchAutocomplete implements Autocompletor {
 	 * @param weights
 	 *            - A corresponding list of weights, such that terms[i] has
 	 *            weight[i].
-	 * @return a BinarySearchAutocomplete whose myTerms object has myTerms[i] =
-	 *         a Term with word terms[i] and weight weights[i].
 	 * @throws a
 	 *             NullPointerException if either argument passed in is null
+	 * @throws an
+	 *             IllegalArgumentException if the arrays differ in length or a
+	 *             weight is negative
 	 */
 	public BinarySearchAutocomplete(String[] terms, double[] weights) {
 		if (terms == null || weights == null)
 			throw new NullPointerException("One or more arguments null");
+		if (terms.length != weights.length)
+			throw new IllegalArgumentException("Terms and weights are not the same length");
 		
-		// adds new terms to Term array and sorts lexicographically
-		myTerms = new Term[terms.length];
+		// sort Terms lexicographically, then split them into columns
+		Term[] sorted = new Term[terms.length];
 		for (int i = 0; i < terms.length; i++) {
-			myTerms[i] = new Term(terms[i], weights[i]);
+			sorted[i] = new Term(terms[i], weights[i]);
+		}
+		Arrays.sort(sorted);
+		myWords = new String[sorted.length];
+		myWeights = new double[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			myWords[i] = sorted[i].getWord();
+			myWeights[i] = sorted[i].getWeight();
 		}
-		Arrays.sort(myTerms);
+		myIndex = new RangeMaxIndex(myWeights);
+	}
+
+	/**
+	 * Wraps columns that are already sorted and indexed, as read back from a
+	 * snapshot, without sorting or rebuilding anything.
+	 */
+	BinarySearchAutocomplete(String[] sortedWords, double[] weights, RangeMaxIndex index) {
+		myWords = sortedWords;
+		myWeights = weights;
+		myIndex = index;
 	}
 
 	/**
@@ -66,9 +105,8 @@ public class BinarySearchAutocomplete implements Autocompletor {
 		while (high - low > 1) {
 			if (low > high) break;
 			int mid = (low + high)/2;
-			if (comparator.compare(a[mid], key) == 0) high = mid;
-			else if (comparator.compare(a[mid], key) < 0) low = mid;
-			else if (comparator.compare(a[mid], key) > 0) high = mid;
+			if (comparator.compare(a[mid], key) < 0) low = mid;
+			else high = mid;
 		}
 		// check if first index before breaking is equal to key; if not, return -1 (no index exists)
 		if (comparator.compare(a[high], key) == 0) return high;
@@ -97,18 +135,100 @@ public class BinarySearchAutocomplete implements Autocompletor {
 		while (high - low > 1) {
 			if (low > high) break;
 			int mid = (low + high)/2;
-			if (comparator.compare(a[mid], key) == 0) low = mid;
-			else if (comparator.compare(a[mid], key) < 0) low = mid;
-			else if (comparator.compare(a[mid], key) > 0) high = mid;
+			if (comparator.compare(a[mid], key) > 0) high = mid;
+			else low = mid;
 		}
 		// check if last index before breaking is equal to key; if not, return -1 (no index exists)
 		if (comparator.compare(a[low], key) == 0) return low;
 		else return -1;
 	}
 
+	/**
+	 * Returns the first index of a whose word starts with prefix, or -1 if
+	 * there is none. Equivalent to firstIndexOf(a, new Term(prefix, 0), new
+	 * Term.PrefixOrder(prefix.length())) but allocates nothing.
+	 * 
+	 * @param a
+	 *            - The array of Terms being searched, sorted lexicographically
+	 * @param prefix
+	 *            - The prefix being searched for
+	 */
+	public static int firstIndexOf(Term[] a, String prefix) {
+		if (a == null || prefix == null) throw new NullPointerException();
+		int low = -1;
+		int high = a.length;
+		// invariant: a[low] sorts before prefix, a[high] does not
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (Term.comparePrefix(a[mid].getWord(), prefix) < 0) low = mid;
+			else high = mid;
+		}
+		if (high < a.length && Term.comparePrefix(a[high].getWord(), prefix) == 0) return high;
+		return -1;
+	}
+
+	/**
+	 * Returns the last index of a whose word starts with prefix, or -1 if
+	 * there is none. Allocates nothing.
+	 * 
+	 * @param a
+	 *            - The array of Terms being searched, sorted lexicographically
+	 * @param prefix
+	 *            - The prefix being searched for
+	 */
+	public static int lastIndexOf(Term[] a, String prefix) {
+		if (a == null || prefix == null) throw new NullPointerException();
+		int low = -1;
+		int high = a.length;
+		// invariant: a[low] does not sort after prefix, a[high] does
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (Term.comparePrefix(a[mid].getWord(), prefix) > 0) high = mid;
+			else low = mid;
+		}
+		if (low >= 0 && Term.comparePrefix(a[low].getWord(), prefix) == 0) return low;
+		return -1;
+	}
+
+	/**
+	 * Returns the first index of words, which must be sorted, starting with
+	 * prefix, or -1 if there is none. Allocates nothing.
+	 */
+	public static int firstIndexOf(String[] words, String prefix) {
+		if (words == null || prefix == null) throw new NullPointerException();
+		int low = -1;
+		int high = words.length;
+		// invariant: words[low] sorts before prefix, words[high] does not
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (Term.comparePrefix(words[mid], prefix) < 0) low = mid;
+			else high = mid;
+		}
+		if (high < words.length && Term.comparePrefix(words[high], prefix) == 0) return high;
+		return -1;
+	}
+
+	/**
+	 * Returns the last index of words, which must be sorted, starting with
+	 * prefix, or -1 if there is none. Allocates nothing.
+	 */
+	public static int lastIndexOf(String[] words, String prefix) {
+		if (words == null || prefix == null) throw new NullPointerException();
+		int low = -1;
+		int high = words.length;
+		// invariant: words[low] does not sort after prefix, words[high] does
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (Term.comparePrefix(words[mid], prefix) > 0) high = mid;
+			else low = mid;
+		}
+		if (low >= 0 && Term.comparePrefix(words[low], prefix) == 0) return low;
+		return -1;
+	}
+
 	/**
 	 * Required by the Autocompletor interface. Returns an array containing the
-	 * k words in myTerms with the largest weight which match the given prefix,
+	 * k words in myWords with the largest weight which match the given prefix,
 	 * in descending weight order. If less than k words exist matching the given
 	 * prefix (including if no words exist), then the array instead contains all
 	 * those words. e.g. If terms is {air:3, bat:2, bell:4, boy:1}, then
@@ -127,96 +247,194 @@ public class BinarySearchAutocomplete implements Autocompletor {
 	 *             NullPointerException if prefix is null
 	 */
 	public Iterable<String> topMatches(String prefix, int k) {
-		// big-Oh of topMatches is O(log n + m log m) - n elements, m matching terms
+		// big-Oh of topMatches is O(log n + k log k) - n elements, k results
 		// prefix cannot be null
 		if (prefix == null) throw new NullPointerException();
 		// k cannot be negative
 		if (k < 0) throw new IllegalArgumentException();
 		
 		// find first and last occurrence of matches using firstIndexOf and lastIndexOf methods
-		int firstIndex = firstIndexOf(myTerms, new Term(prefix, 0), new Term.PrefixOrder(prefix.length()));
-		int lastIndex = lastIndexOf(myTerms, new Term(prefix, 0), new Term.PrefixOrder(prefix.length()));
+		int firstIndex = firstIndexOf(myWords, prefix);
+		int lastIndex = lastIndexOf(myWords, prefix);
 		
 		// if either no first or no last match, return empty String ArrayList
-		if (firstIndex == -1 || lastIndex == -1)
-			return new ArrayList<String>();
-		
-		// add each matching term to a Term ArrayList
-		ArrayList<Term> arr = new ArrayList<>();
-		for (int i = firstIndex; i <= lastIndex; i++) {
-			arr.add(myTerms[i]);
-		}
-		
-		// sort ArrayList of matching Terms based on weight using comparator ReverseWeightOrder
-		Collections.sort(arr, new Term.ReverseWeightOrder());
-		
-		// add k (or arr.size()) number of Term words to a String ArrayList to return		
 		ArrayList<String> fin = new ArrayList<>();
-		int numResults = Math.min(k, arr.size());
-		for (int i = 0; i < numResults; i++) {
-			fin.add(arr.get(i).getWord());
-		}
+		if (firstIndex == -1 || lastIndex == -1)
+			return fin;
 		
+		// pull the k heaviest matches out of the range without sorting it
+		for (int i : myIndex.topIndices(firstIndex, lastIndex, k))
+			fin.add(myWords[i]);
 		return fin;
-		
-//		PriorityQueue<Term> pq = new PriorityQueue<Term>(k, new Term.WeightOrder());
-//		for (int i = firstIndex; i <= lastIndex; i++) {
-//			System.out.println(pq);
-//			if (pq.size() < k) {
-//				pq.add(myTerms[i]);
-//			}
-//			else if (pq.peek().getWeight() < myTerms[i].getWeight()) {
-//				pq.remove();
-//				pq.add(myTerms[i]);
-//			}
-//		}
-//		
-//		ArrayList<String> fin = new ArrayList<>();
-//		int numResults = Math.min(k, pq.size());
-//		for (int i = 0; i < pq.size(); i++) {
-//			fin.add(pq.remove().getWord());
-//		}
-//		System.out.println(fin);
-//		System.out.println("\n");		
-	}
-
-	/**
-	 * Given a prefix, returns the largest-weight word in myTerms starting with
+	}
+
+	/**
+	 * Fills buffer with the k heaviest words starting with prefix and their
+	 * weights, read from the same indices topMatches finds, and returns it.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 * @throws IllegalArgumentException
+	 *             if k is negative
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		if (prefix == null) throw new NullPointerException();
+		if (k < 0) throw new IllegalArgumentException();
+		buffer.clear();
+		int firstIndex = firstIndexOf(myWords, prefix);
+		if (firstIndex == -1)
+			return buffer;
+		for (int i : myIndex.topIndices(firstIndex, lastIndexOf(myWords, prefix), k))
+			buffer.add(myWords[i], myWeights[i]);
+		return buffer;
+	}
+
+	/**
+	 * Returns every word starting with prefix in descending weight order,
+	 * drawn lazily from the range-maximum index, so the first word costs the
+	 * same as topMatch.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		int firstIndex = firstIndexOf(myWords, prefix);
+		if (firstIndex == -1)
+			return Collections.<String>emptyIterator();
+		final PrimitiveIterator.OfInt indices = myIndex.descending(firstIndex, lastIndexOf(myWords, prefix));
+		return new Iterator<String>() {
+			public boolean hasNext() {
+				return indices.hasNext();
+			}
+
+			public String next() {
+				return myWords[indices.nextInt()];
+			}
+		};
+	}
+
+	/**
+	 * Given a prefix, returns the largest-weight word in myWords starting with
 	 * that prefix. e.g. for {air:3, bat:2, bell:4, boy:1}, topMatch("b") would
 	 * return "bell". If no such word exists, return an empty String.
 	 * 
 	 * @param prefix
 	 *            - the prefix the returned word should start with
-	 * @return The word from myTerms with the largest weight starting with
+	 * @return The word from myWords with the largest weight starting with
 	 *         prefix, or an empty string if none exists
 	 * @throws a
 	 *             NullPointerException if the prefix is null
 	 * 
 	 */
 	public String topMatch(String prefix) {
-		// big-Oh of topMatches is O(log n + m)
+		// big-Oh of topMatch is O(log n)
 		// prefix cannot be null
 		if (prefix == null) throw new NullPointerException();
 		
 		// find first and last occurrence of matches using firstIndexOf and lastIndexOf methods
-		int firstIndex = firstIndexOf(myTerms, new Term(prefix, 0), new Term.PrefixOrder(prefix.length()));
-		int lastIndex = lastIndexOf(myTerms, new Term(prefix, 0), new Term.PrefixOrder(prefix.length()));
+		int firstIndex = firstIndexOf(myWords, prefix);
+		int lastIndex = lastIndexOf(myWords, prefix);
 		
 		// if either no first or no last match, return empty string
 		if (firstIndex == -1 || lastIndex == -1)
 			return "";
 		
-		// go through matching terms and if weight of term being checked is greater than Term in pq, replace them
-		PriorityQueue<Term> pq = new PriorityQueue<Term>(1, new Term.ReverseWeightOrder());
-		for (int i = firstIndex; i <= lastIndex; i++) {
-			// add first Term to pq
-			if (pq.peek() == null) pq.add(myTerms[i]);
-			else if (pq.peek().getWeight() < myTerms[i].getWeight()) {
-				pq.remove();
-				pq.add(myTerms[i]);
+		// a single range-maximum query over the matching terms
+		return myWords[myIndex.maxIndex(firstIndex, lastIndex)];
+	}
+
+	/**
+	 * Returns a session that keeps the range of words matching each prefix of
+	 * its text on a stack. Typing a character narrows the current range with
+	 * two binary searches that compare only that character, since every word
+	 * in the range already shares the rest of the prefix; backspace is a pop.
+	 */
+	public AutocompleteSession newSession() {
+		return new RangeSession();
+	}
+
+	/**
+	 * Entry i of the stack is the inclusive range [myFirst[i], myLast[i]] of
+	 * words starting with the first i characters of the text, empty when
+	 * myFirst[i] > myLast[i].
+	 */
+	private class RangeSession extends AutocompleteSession {
+		private int[] myFirst = new int[16];
+		private int[] myLast = new int[16];
+		private int mySize = 1;
+
+		RangeSession() {
+			myFirst[0] = 0;
+			myLast[0] = myWords.length - 1;
+		}
+
+		protected void pushed(char ch) {
+			int lo = myFirst[mySize - 1];
+			int hi = myLast[mySize - 1];
+			int pos = length() - 1;
+			int first = hi + 1;
+			int last = hi;
+			if (lo <= hi) {
+				// words in [lo, hi] are sorted by their character at pos, with
+				// words too short to have one first
+				int low = lo - 1;
+				int high = hi + 1;
+				while (high - low > 1) {
+					int mid = (low + high) >>> 1;
+					if (charAt(myWords[mid], pos) < ch) low = mid;
+					else high = mid;
+				}
+				first = high;
+				high = hi + 1;
+				while (high - low > 1) {
+					int mid = (low + high) >>> 1;
+					if (charAt(myWords[mid], pos) > ch) high = mid;
+					else low = mid;
+				}
+				last = low;
+			}
+			if (mySize == myFirst.length) {
+				myFirst = Arrays.copyOf(myFirst, 2 * mySize);
+				myLast = Arrays.copyOf(myLast, 2 * mySize);
 			}
+			myFirst[mySize] = first;
+			myLast[mySize] = last;
+			mySize++;
 		}
-		return pq.peek().getWord();
+
+		protected void popped() {
+			mySize--;
+		}
+
+		public Iterable<String> topMatches(int k) {
+			if (k < 0) throw new IllegalArgumentException();
+			ArrayList<String> fin = new ArrayList<>();
+			for (int i : myIndex.topIndices(myFirst[mySize - 1], myLast[mySize - 1], k))
+				fin.add(myWords[i]);
+			return fin;
+		}
+
+		public String topMatch() {
+			int first = myFirst[mySize - 1];
+			int last = myLast[mySize - 1];
+			return first > last ? "" : myWords[myIndex.maxIndex(first, last)];
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			if (k < 0) throw new IllegalArgumentException();
+			buffer.clear();
+			for (int i : myIndex.topIndices(myFirst[mySize - 1], myLast[mySize - 1], k))
+				buffer.add(myWords[i], myWeights[i]);
+			return buffer;
+		}
+	}
+
+	/**
+	 * The character of word at pos, or -1 if word is too short.
+	 */
+	private static int charAt(String word, int pos) {
+		return pos < word.length() ? word.charAt(pos) : -1;
 	}
 
 	/**
@@ -224,12 +442,10 @@ public class BinarySearchAutocomplete implements Autocompletor {
 	 * return 0.0
 	 */
 	public double weightOf(String term) {
-		int firstIndex = firstIndexOf(myTerms, new Term(term, 0), new Term.PrefixOrder(term.length()));
-		int lastIndex = lastIndexOf(myTerms, new Term(term, 0), new Term.PrefixOrder(term.length()));
-		for (int i = firstIndex; i <= lastIndex; i++) {
-			if (myTerms[i].getWord().equalsIgnoreCase(term))
-				return myTerms[i].getWeight();
-		}
+		// the term itself sorts first among the words it is a prefix of
+		int firstIndex = firstIndexOf(myWords, term);
+		if (firstIndex != -1 && myWords[firstIndex].length() == term.length())
+			return myWeights[firstIndex];
 		// if term is not in the dictionary return 0
 		return 0.0;
 	}
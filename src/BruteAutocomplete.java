@@ -1,14 +1,18 @@
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 
 /**
  * Implements Autocompletor by scanning through the entire array of terms for
- * every topKMatches or topMatch query.
+ * every topKMatches or topMatch query. Immutable once constructed, so safe
+ * to query from many threads.
  */
 public class BruteAutocomplete implements Autocompletor {
 
-	Term[] myTerms;
+	final Term[] myTerms;
 
 	public BruteAutocomplete(String[] terms, double[] weights) {
 		// 1. Both arugments are non-null
@@ -31,34 +35,84 @@ public class BruteAutocomplete implements Autocompletor {
 	}
 
 	public Iterable<String> topMatches(String prefix, int k) {
+		LinkedList<String> ret = new LinkedList<String>();
+		for (Term t : heaviest(prefix, k))
+			ret.add(t.getWord());
+		return ret;
+	}
+
+	/**
+	 * Fills buffer with the k heaviest terms starting with prefix and their
+	 * weights, from a single scan, and returns it.
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		Term[] heaviest = heaviest(prefix, k);
+		buffer.clear();
+		for (Term t : heaviest)
+			buffer.add(t.getWord(), t.getWeight());
+		return buffer;
+	}
+
+	/**
+	 * Returns the (at most) k heaviest terms starting with prefix, in
+	 * descending weight order.
+	 */
+	private Term[] heaviest(String prefix, int k) {
 		if (k < 0)
 			throw new IllegalArgumentException("Illegal value of k:"+k);
-		// maintain pq of size k
-		PriorityQueue<Term> pq = new PriorityQueue<Term>(k, new Term.ReverseWeightOrder());
+		// maintain a min-heap of the k heaviest terms seen so far
+		PriorityQueue<Term> pq = new PriorityQueue<Term>(Math.max(1, k), new Term.WeightOrder());
 		for (Term t : myTerms) {
 			if (!t.getWord().startsWith(prefix))
 				continue;
 			if (pq.size() < k) {
 				pq.add(t);
-			} else if (pq.peek().getWeight() < t.getWeight()) {
+			} else if (k > 0 && pq.peek().getWeight() < t.getWeight()) {
 				pq.remove();
 				pq.add(t);
 			}
 		}
-		int numResults = Math.min(k, pq.size());
-		LinkedList<String> ret = new LinkedList<String>();
-		for (int i = 0; i < numResults; i++) {
-			ret.addFirst(pq.remove().getWord());
-		}
+		Term[] ret = new Term[pq.size()];
+		for (int i = ret.length - 1; i >= 0; i--)
+			ret[i] = pq.remove();
 		return ret;
 	}
 
+	/**
+	 * Returns every term starting with prefix in descending weight order. One
+	 * scan collects the matches into a heap, which is then emptied lazily, so
+	 * the first term costs about as much as topMatch.
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		if (prefix == null)
+			throw new NullPointerException();
+		ArrayList<Term> matches = new ArrayList<Term>();
+		for (Term t : myTerms)
+			if (t.getWord().startsWith(prefix))
+				matches.add(t);
+		final PriorityQueue<Term> pq = new PriorityQueue<Term>(Math.max(1, matches.size()),
+				new Term.ReverseWeightOrder());
+		pq.addAll(matches);
+		return new Iterator<String>() {
+			public boolean hasNext() {
+				return !pq.isEmpty();
+			}
+
+			public String next() {
+				if (pq.isEmpty())
+					throw new NoSuchElementException();
+				return pq.remove().getWord();
+			}
+		};
+	}
+
 	public String topMatch(String prefix) {
 		String maxTerm = "";
 		double maxWeight = -1;
 		for (Term t : myTerms) {
 			if (t.getWeight() > maxWeight && t.getWord().startsWith(prefix)) {
 				maxTerm = t.getWord();
+				maxWeight = t.getWeight();
 			}
 		}
 		return maxTerm;
@@ -66,7 +120,7 @@ public class BruteAutocomplete implements Autocompletor {
 
 	public double weightOf(String term) {
 		for (Term t : myTerms) {
-			if (t.getWord().equalsIgnoreCase(term))
+			if (t.getWord().equals(term))
 				return t.getWeight();
 		}
 		// term is not in dictionary return 0
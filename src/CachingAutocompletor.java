@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An Autocompletor that remembers the results of recent topMatches queries
+ * on another Autocompletor, for traffic where a small set of prefixes makes
+ * up most queries. Results are cached per (prefix, k) together with their
+ * weights, so topMatchesWithWeights is served from the cache as well.
+ *
+ * The cache holds at most a fixed number of results and evicts the least
+ * recently used. Only queries with k up to MAX_CACHED_K are cached; larger
+ * ones always go to the underlying Autocompletor, so no entry holds more
+ * than MAX_CACHED_K matches and the cache holds at most capacity times that
+ * many in all. The cache is split into
+ * independently locked segments chosen by the key's hash, so concurrent
+ * queries on different prefixes rarely wait for each other, and the hit and
+ * miss counters are LongAdders that threads update without contention.
+ *
+ * Cached results go stale if the underlying index changes; call
+ * invalidateAll when it does. Wrapping a HotSwapAutocompletor does this
+ * automatically after every reload.
+ */
+public class CachingAutocompletor implements Autocompletor {
+
+	private static final int DEFAULT_SEGMENTS = 16;
+
+	/**
+	 * The largest k whose results are cached.
+	 */
+	public static final int MAX_CACHED_K = 100;
+
+	private final Autocompletor myDelegate;
+	private final Segment[] mySegments;
+	private final int myCapacity;
+
+	private final LongAdder myHits = new LongAdder();
+	private final LongAdder myMisses = new LongAdder();
+
+	/**
+	 * Bumped by invalidateAll, so a result computed before an invalidation
+	 * is not cached after it.
+	 */
+	private volatile long myGeneration;
+
+	/**
+	 * Caches up to capacity results of delegate in 16 segments, or in
+	 * capacity segments of one result each if capacity is less than 16.
+	 */
+	public CachingAutocompletor(Autocompletor delegate, int capacity) {
+		this(delegate, capacity, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Caches up to capacity results of delegate, split into the given number
+	 * of independently locked segments of capacity / segments results each.
+	 * A capacity less than segments gets capacity segments instead.
+	 *
+	 * @throws NullPointerException
+	 *             if delegate is null
+	 * @throws IllegalArgumentException
+	 *             if segments or capacity is not positive
+	 */
+	public CachingAutocompletor(Autocompletor delegate, int capacity, int segments) {
+		if (delegate == null)
+			throw new NullPointerException();
+		if (segments <= 0 || capacity <= 0)
+			throw new IllegalArgumentException("Bad capacity " + capacity + " for " + segments + " segments");
+		segments = Math.min(segments, capacity);
+		myDelegate = delegate;
+		mySegments = new Segment[segments];
+		for (int i = 0; i < segments; i++)
+			mySegments[i] = new Segment(capacity / segments);
+		myCapacity = capacity / segments * segments;
+		if (delegate instanceof HotSwapAutocompletor) {
+			((HotSwapAutocompletor) delegate).addSwapListener(new Runnable() {
+				public void run() {
+					invalidateAll();
+				}
+			});
+		}
+	}
+
+	public Iterable<String> topMatches(String prefix, int k) {
+		return Collections.unmodifiableList(Arrays.asList(lookup(prefix, k).myTerms));
+	}
+
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		Result result = lookup(prefix, k);
+		buffer.clear();
+		for (int i = 0; i < result.myTerms.length; i++)
+			buffer.add(result.myTerms[i], result.myWeights[i]);
+		return buffer;
+	}
+
+	public String topMatch(String prefix) {
+		return myDelegate.topMatch(prefix);
+	}
+
+	public double weightOf(String term) {
+		return myDelegate.weightOf(term);
+	}
+
+	/**
+	 * Returns the cached result for (prefix, k), computing and caching it on
+	 * a miss. The delegate is queried outside the segment lock, so a slow
+	 * miss never blocks hits on the same segment; two threads missing on the
+	 * same key at once may both compute it. A k above MAX_CACHED_K counts as
+	 * a miss and is never cached.
+	 */
+	private Result lookup(String prefix, int k) {
+		if (prefix == null)
+			throw new NullPointerException();
+		if (k > MAX_CACHED_K) {
+			myMisses.increment();
+			return new Result(myDelegate.topMatchesWithWeights(prefix, k, new WeightedMatches()));
+		}
+		Key key = new Key(prefix, k);
+		Segment segment = mySegments[(key.hashCode() & 0x7fffffff) % mySegments.length];
+		Result result;
+		synchronized (segment) {
+			result = segment.get(key);
+		}
+		if (result != null) {
+			myHits.increment();
+			return result;
+		}
+		myMisses.increment();
+		long generation = myGeneration;
+		WeightedMatches matches = myDelegate.topMatchesWithWeights(prefix, k, new WeightedMatches());
+		result = new Result(matches);
+		synchronized (segment) {
+			if (generation == myGeneration)
+				segment.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops every cached result. Call whenever the underlying index changes.
+	 */
+	public void invalidateAll() {
+		myGeneration++;
+		for (Segment segment : mySegments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * Number of results currently cached.
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : mySegments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Most results the cache will hold.
+	 */
+	public int getCapacity() {
+		return myCapacity;
+	}
+
+	/**
+	 * Number of topMatches and topMatchesWithWeights calls answered from the
+	 * cache.
+	 */
+	public long getHitCount() {
+		return myHits.sum();
+	}
+
+	/**
+	 * Number of topMatches and topMatchesWithWeights calls passed on to the
+	 * underlying Autocompletor.
+	 */
+	public long getMissCount() {
+		return myMisses.sum();
+	}
+
+	/**
+	 * Fraction of calls answered from the cache, or 0 if there were none.
+	 */
+	public double getHitRate() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	/**
+	 * One LRU segment: a LinkedHashMap in access order that drops its least
+	 * recently used entry once it grows past its capacity. Callers lock it.
+	 */
+	private static class Segment extends LinkedHashMap<Key, Result> {
+		private static final long serialVersionUID = 1L;
+		private final int myCapacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			myCapacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+			return size() > myCapacity;
+		}
+	}
+
+	private static final class Key {
+		final String myPrefix;
+		final int myK;
+
+		Key(String prefix, int k) {
+			myPrefix = prefix;
+			myK = k;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return myK == other.myK && myPrefix.equals(other.myPrefix);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * myPrefix.hashCode() + myK;
+		}
+	}
+
+	/**
+	 * An immutable copy of one query's matches and weights.
+	 */
+	private static final class Result {
+		final String[] myTerms;
+		final double[] myWeights;
+
+		Result(WeightedMatches matches) {
+			myTerms = new String[matches.size()];
+			myWeights = new double[matches.size()];
+			for (int i = 0; i < myTerms.length; i++) {
+				myTerms[i] = matches.term(i);
+				myWeights[i] = matches.weight(i);
+			}
+		}
+	}
+}
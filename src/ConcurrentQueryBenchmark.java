@@ -0,0 +1,108 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures how topMatches throughput scales when many threads query one
+ * shared Autocompletor. For 1, 2, 4, ... threads up to twice the core count,
+ * every thread runs topMatches on random prefixes for a fixed time, and the
+ * total queries per second is reported along with the speedup over one
+ * thread. An index whose queries share no mutable state should scale close
+ * to linearly up to the core count.
+ * 
+ * A positive cacheEntries wraps the index in a CachingAutocompletor of that
+ * capacity, to check that the cache's locks do not limit scaling.
+ * 
+ * Usage: java ConcurrentQueryBenchmark file [className [k [seconds [cacheEntries]]]]
+ */
+public class ConcurrentQueryBenchmark {
+
+	/**
+	 * Written once per thread so the JIT cannot discard the queries.
+	 */
+	public static volatile long ourSink;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java ConcurrentQueryBenchmark file [className [k [seconds [cacheEntries]]]]");
+			System.exit(1);
+		}
+		String className = args.length >= 2 ? args[1] : "FrozenTrieAutocomplete";
+		int k = args.length >= 3 ? Integer.parseInt(args[2]) : 10;
+		double seconds = args.length >= 4 ? Double.parseDouble(args[3]) : 2;
+		int cacheEntries = args.length >= 5 ? Integer.parseInt(args[4]) : 0;
+
+		TermFileLoader loader = TermFileLoader.load(new File(args[0]));
+		String[] terms = loader.getTerms();
+		Autocompletor auto = AutocompleteMain.create(className, terms, loader.getWeights());
+		if (cacheEntries > 0)
+			auto = new CachingAutocompletor(auto, cacheEntries);
+		System.out.println("Benchmarking " + auto.getClass().getName() + " on " + terms.length + " terms");
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		// one untimed round so every thread count runs compiled code
+		run(auto, terms, k, 1, seconds);
+		double single = 0;
+		for (int threads = 1; threads <= 2 * cores; threads *= 2) {
+			double throughput = run(auto, terms, k, threads, seconds);
+			if (threads == 1)
+				single = throughput;
+			System.out.printf("%3d threads - %12.0f queries/s - speedup %.2f%n", threads, throughput,
+					throughput / single);
+		}
+		if (auto instanceof CachingAutocompletor)
+			System.out.printf("Cache hit rate %.3f%n", ((CachingAutocompletor) auto).getHitRate());
+	}
+
+	/**
+	 * Runs threads threads against auto for the given time and returns the
+	 * total number of queries per second they completed. The rate is over
+	 * the time actually measured from the start signal to the last thread
+	 * finishing, which runs past the requested time by each thread's last
+	 * query and by any thread that starts late.
+	 */
+	public static double run(final Autocompletor auto, final String[] terms, final int k, int threads,
+			double seconds) throws InterruptedException, IOException {
+		final long duration = (long) (seconds * 1E9);
+		final long[] counts = new long[threads];
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(new Runnable() {
+				public void run() {
+					// each thread has its own generator and counters
+					Random random = new Random(id);
+					long queries = 0;
+					long sink = 0;
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					long begin = System.nanoTime();
+					while (System.nanoTime() - begin < duration) {
+						String term = terms[random.nextInt(terms.length)];
+						String prefix = term.substring(0, Math.min(term.length(), 1 + random.nextInt(3)));
+						for (String match : auto.topMatches(prefix, k))
+							sink += match.length();
+						queries++;
+					}
+					counts[id] = queries;
+					ourSink += sink;
+				}
+			});
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		long total = 0;
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+			total += counts[t];
+		}
+		long elapsed = System.nanoTime() - begin;
+		return total / (elapsed / 1E9);
+	}
+}
@@ -0,0 +1,654 @@
+import java.util.*;
+
+/**
+ * Double-array trie implementation of Autocompletor. The trie has one state
+ * per distinct prefix, like TrieAutocomplete, but instead of a Node object
+ * per state every state is a cell in a few parallel arrays. The transition
+ * from state s on character c goes to cell t = myBase[s] + code(c), and is
+ * valid only if myCheck[t] == s, so following a character is two array
+ * reads and a comparison rather than a load through a Node and its child
+ * arrays.
+ *
+ * Characters are renumbered by how often they occur in the dictionary, the
+ * most common getting the smallest code, which keeps the children of a
+ * state close together and the arrays dense. mySubtreeMax holds the
+ * heaviest weight below each state for the best-first search, and
+ * myFirstChild and myNextSibling list each state's children in character
+ * order so the search need not try every code.
+ *
+ * The arrays are built once from the sorted terms and never written again,
+ * so a constructed instance can be queried from many threads at once.
+ */
+public class DoubleArrayTrieAutocomplete implements Autocompletor {
+
+	/**
+	 * The root's cell.
+	 */
+	private static final int ROOT = 0;
+
+	/**
+	 * Code of every character, indexed by the character; 0 for characters
+	 * that occur in no term, or past the end for characters above the
+	 * largest one that does.
+	 */
+	private final char[] myCodes;
+
+	private final int[] myBase;
+	private final int[] myCheck;
+
+	/**
+	 * The heaviest weight of any word at or below each state.
+	 */
+	private final double[] mySubtreeMax;
+
+	/**
+	 * The state's first child in character order and its next sibling, or -1.
+	 */
+	private final int[] myFirstChild;
+	private final int[] myNextSibling;
+
+	/**
+	 * Index into myTerms of the word ending at each state, or -1.
+	 */
+	private final int[] myTermIndex;
+
+	/**
+	 * The terms in sorted order and their weights.
+	 */
+	private final String[] myTerms;
+	private final double[] myWeights;
+
+	private final int myStateCount;
+
+	/**
+	 * Builds the double-array trie of terms, such that terms[i] has weight
+	 * weights[i].
+	 *
+	 * @throws NullPointerException
+	 *             if either argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths or a term is
+	 *             duplicated
+	 */
+	public DoubleArrayTrieAutocomplete(String[] terms, double[] weights) {
+		if (terms == null || weights == null)
+			throw new NullPointerException("One or more arguments null");
+		if (terms.length != weights.length)
+			throw new IllegalArgumentException("Terms and weights are not the same length");
+		int[] order = TermSort.sortedOrder(terms);
+		myTerms = new String[terms.length];
+		myWeights = new double[terms.length];
+		for (int i = 0; i < order.length; i++) {
+			myTerms[i] = terms[order[i]];
+			myWeights[i] = weights[order[i]];
+			if (i > 0 && myTerms[i].equals(myTerms[i - 1]))
+				throw new IllegalArgumentException("Duplicate term " + myTerms[i]);
+		}
+		myCodes = assignCodes(myTerms);
+
+		Builder builder = new Builder(myTerms, myCodes);
+		myStateCount = builder.myStateCount;
+		int size = builder.mySize;
+		myBase = Arrays.copyOf(builder.myBase, size);
+		myCheck = Arrays.copyOf(builder.myCheck, size);
+		myFirstChild = Arrays.copyOf(builder.myFirstChild, size);
+		myNextSibling = Arrays.copyOf(builder.myNextSibling, size);
+		myTermIndex = Arrays.copyOf(builder.myTermIndex, size);
+		mySubtreeMax = new double[size];
+		Arrays.fill(mySubtreeMax, Double.NEGATIVE_INFINITY);
+		// states were created parents first, so in reverse every state is
+		// complete before it is folded into its parent
+		for (int i = myStateCount - 1; i >= 0; i--) {
+			int state = builder.myOrder[i];
+			if (myTermIndex[state] >= 0)
+				mySubtreeMax[state] = Math.max(mySubtreeMax[state], myWeights[myTermIndex[state]]);
+			if (state != ROOT)
+				mySubtreeMax[myCheck[state]] = Math.max(mySubtreeMax[myCheck[state]], mySubtreeMax[state]);
+		}
+	}
+
+	/**
+	 * Numbers the characters of terms from 1 in descending order of
+	 * frequency.
+	 */
+	private static char[] assignCodes(String[] terms) {
+		int[] counts = new int[Character.MAX_VALUE + 1];
+		int largest = -1;
+		for (String term : terms) {
+			for (int i = 0; i < term.length(); i++) {
+				char ch = term.charAt(i);
+				counts[ch]++;
+				largest = Math.max(largest, ch);
+			}
+		}
+		Integer[] chars = new Integer[largest + 1];
+		for (int i = 0; i < chars.length; i++)
+			chars[i] = i;
+		Arrays.sort(chars, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(counts[b], counts[a]);
+			}
+		});
+		char[] codes = new char[largest + 1];
+		for (int i = 0; i < chars.length && counts[chars[i]] > 0; i++)
+			codes[chars[i]] = (char) (i + 1);
+		return codes;
+	}
+
+	/**
+	 * Lays out the trie of sorted terms in the arrays. Each pending state
+	 * covers the range of terms that start with its prefix; the first of
+	 * them is the prefix itself if that is a word, and the rest are grouped
+	 * by their next character into children. A state's base is the first
+	 * one at which every child's cell is free, found by walking a linked
+	 * list of the free cells. The head of the list moves past free cells
+	 * that keep failing, which are left among densely filled cells, so later
+	 * states do not walk over the same leftovers again and again.
+	 */
+	private static class Builder {
+		int[] myBase;
+		int[] myCheck;
+		int[] myFirstChild;
+		int[] myNextSibling;
+		int[] myTermIndex;
+		int mySize = 1;
+
+		/**
+		 * States in the order they were created.
+		 */
+		int[] myOrder;
+		int myStateCount;
+
+		/**
+		 * Doubly linked circular list of the free cells, or -1 for none.
+		 */
+		private int[] myNextFree;
+		private int[] myPrevFree;
+
+		/**
+		 * Times each cell was tried for the first child and failed.
+		 */
+		private int[] myFailures;
+		private int myFreeHead = -1;
+
+		private final String[] myTerms;
+		private final char[] myCodes;
+
+		Builder(String[] terms, char[] codes) {
+			myTerms = terms;
+			myCodes = codes;
+			myBase = new int[0];
+			myCheck = new int[0];
+			myFirstChild = new int[0];
+			myNextSibling = new int[0];
+			myTermIndex = new int[0];
+			myNextFree = new int[0];
+			myPrevFree = new int[0];
+			myFailures = new int[0];
+			grow(Math.max(16, terms.length));
+			myOrder = new int[16];
+			unlink(ROOT);
+			myCheck[ROOT] = ROOT;
+			addState(ROOT);
+
+			// pending states, four ints each: state, first term, end, depth
+			int[] stack = new int[64];
+			int top = 0;
+			stack[top++] = ROOT;
+			stack[top++] = 0;
+			stack[top++] = terms.length;
+			stack[top++] = 0;
+			char[] labels = new char[16];
+			int[] starts = new int[17];
+			int[] codesOf = new int[16];
+			while (top > 0) {
+				int depth = stack[--top];
+				int end = stack[--top];
+				int lo = stack[--top];
+				int state = stack[--top];
+				if (lo < end && terms[lo].length() == depth)
+					myTermIndex[state] = lo++;
+				int count = 0;
+				for (int i = lo; i < end; i++) {
+					char ch = terms[i].charAt(depth);
+					if (count == 0 || labels[count - 1] != ch) {
+						if (count == labels.length) {
+							labels = Arrays.copyOf(labels, 2 * count);
+							starts = Arrays.copyOf(starts, 2 * count + 1);
+							codesOf = Arrays.copyOf(codesOf, 2 * count);
+						}
+						labels[count] = ch;
+						codesOf[count] = myCodes[ch];
+						starts[count] = i;
+						count++;
+					}
+				}
+				starts[count] = end;
+				if (count == 0)
+					continue;
+				int base = findBase(codesOf, count);
+				myBase[state] = base;
+				int previous = -1;
+				for (int c = 0; c < count; c++) {
+					int child = base + codesOf[c];
+					unlink(child);
+					myCheck[child] = state;
+					mySize = Math.max(mySize, child + 1);
+					addState(child);
+					if (previous < 0)
+						myFirstChild[state] = child;
+					else
+						myNextSibling[previous] = child;
+					previous = child;
+				}
+				// push in reverse so children are laid out in character order
+				for (int c = count - 1; c >= 0; c--) {
+					if (top + 4 > stack.length)
+						stack = Arrays.copyOf(stack, 2 * stack.length);
+					stack[top++] = base + codesOf[c];
+					stack[top++] = starts[c];
+					stack[top++] = starts[c + 1];
+					stack[top++] = depth + 1;
+				}
+			}
+		}
+
+		private void addState(int state) {
+			if (myStateCount == myOrder.length)
+				myOrder = Arrays.copyOf(myOrder, 2 * myStateCount);
+			myOrder[myStateCount++] = state;
+		}
+
+		/**
+		 * Times a free cell may fail as the first child's cell before the head
+		 * of the free list moves past it.
+		 */
+		private static final int MAX_FAILURES = 64;
+
+		/**
+		 * The smallest base, starting from a free cell for the first child
+		 * at or after the head of the free list, at which the cells of all
+		 * count codes are free.
+		 */
+		private int findBase(int[] codes, int count) {
+			int largest = 0;
+			for (int c = 0; c < count; c++)
+				largest = Math.max(largest, codes[c]);
+			if (myFreeHead < 0)
+				grow(myCheck.length + largest + 1);
+			int start = myFreeHead;
+			int cell = start;
+			while (true) {
+				int base = cell - codes[0];
+				if (base >= 0) {
+					if (base + largest >= myCheck.length)
+						grow(base + largest + 1);
+					boolean fits = true;
+					for (int c = 1; c < count && fits; c++)
+						fits = myCheck[base + codes[c]] < 0;
+					if (fits)
+						return base;
+				}
+				// a cell at the head that keeps failing sits among taken
+				// cells; later walks start after it, and reach it again only
+				// when they wrap around
+				if (++myFailures[cell] >= MAX_FAILURES && cell == myFreeHead)
+					myFreeHead = myNextFree[cell];
+				cell = myNextFree[cell];
+				if (cell == start) {
+					// every free cell was tried; carry on in new ones
+					cell = myCheck.length;
+					grow(myCheck.length + largest + 1);
+				}
+			}
+		}
+
+		/**
+		 * Extends the arrays to at least capacity cells, adding the new cells
+		 * to the end of the free list.
+		 */
+		private void grow(int capacity) {
+			int old = myCheck.length;
+			capacity = Math.max(capacity, 2 * old);
+			myBase = Arrays.copyOf(myBase, capacity);
+			myCheck = Arrays.copyOf(myCheck, capacity);
+			myFirstChild = Arrays.copyOf(myFirstChild, capacity);
+			myNextSibling = Arrays.copyOf(myNextSibling, capacity);
+			myTermIndex = Arrays.copyOf(myTermIndex, capacity);
+			myNextFree = Arrays.copyOf(myNextFree, capacity);
+			myPrevFree = Arrays.copyOf(myPrevFree, capacity);
+			myFailures = Arrays.copyOf(myFailures, capacity);
+			Arrays.fill(myCheck, old, capacity, -1);
+			Arrays.fill(myFirstChild, old, capacity, -1);
+			Arrays.fill(myNextSibling, old, capacity, -1);
+			Arrays.fill(myTermIndex, old, capacity, -1);
+			for (int cell = old; cell < capacity; cell++) {
+				if (myFreeHead < 0) {
+					myFreeHead = cell;
+					myNextFree[cell] = cell;
+					myPrevFree[cell] = cell;
+				} else {
+					int last = myPrevFree[myFreeHead];
+					myNextFree[last] = cell;
+					myPrevFree[cell] = last;
+					myNextFree[cell] = myFreeHead;
+					myPrevFree[myFreeHead] = cell;
+				}
+			}
+		}
+
+		private void unlink(int cell) {
+			if (myNextFree[cell] == cell) {
+				myFreeHead = -1;
+				return;
+			}
+			myNextFree[myPrevFree[cell]] = myNextFree[cell];
+			myPrevFree[myNextFree[cell]] = myPrevFree[cell];
+			if (myFreeHead == cell)
+				myFreeHead = myNextFree[cell];
+		}
+	}
+
+	/**
+	 * The state reached from state by ch, or -1 if there is none.
+	 */
+	private int child(int state, char ch) {
+		if (ch >= myCodes.length || myCodes[ch] == 0)
+			return -1;
+		int next = myBase[state] + myCodes[ch];
+		return next < myCheck.length && myCheck[next] == state ? next : -1;
+	}
+
+	/**
+	 * The state whose prefix is prefix, or -1 if no word starts with prefix.
+	 */
+	private int locate(String prefix) {
+		int state = ROOT;
+		for (int i = 0; i < prefix.length() && state >= 0; i++)
+			state = child(state, prefix.charAt(i));
+		if (state == ROOT && myTerms.length == 0)
+			return -1;
+		return state;
+	}
+
+	/**
+	 * Required by the Autocompletor interface. Returns the k words with the
+	 * largest weight which start with prefix, in descending weight order, or
+	 * all such words if there are fewer than k.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterable<String> topMatches(String prefix, int k) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatches(locate(prefix), k);
+	}
+
+	private ArrayList<String> topMatches(int state, int k) {
+		ArrayList<String> arr = new ArrayList<String>();
+		if (k <= 0 || state < 0) return arr;
+		WordIterator words = new WordIterator(state);
+		while (arr.size() < k && words.hasNext())
+			arr.add(myTerms[words.next()]);
+		return arr;
+	}
+
+	/**
+	 * Fills buffer with the k heaviest words starting with prefix and their
+	 * weights, from the same search as topMatches, and returns it.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatchesWithWeights(locate(prefix), k, buffer);
+	}
+
+	private WeightedMatches topMatchesWithWeights(int state, int k, WeightedMatches buffer) {
+		buffer.clear();
+		if (k <= 0 || state < 0) return buffer;
+		WordIterator words = new WordIterator(state);
+		while (buffer.size() < k && words.hasNext()) {
+			int term = words.next();
+			buffer.add(myTerms[term], myWeights[term]);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns every word starting with prefix in descending weight order,
+	 * found lazily by the search topMatches uses.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		int start = locate(prefix);
+		if (start < 0) return Collections.<String>emptyIterator();
+		final WordIterator words = new WordIterator(start);
+		return new Iterator<String>() {
+			public boolean hasNext() {
+				return words.hasNext();
+			}
+
+			public String next() {
+				return myTerms[words.next()];
+			}
+		};
+	}
+
+	/**
+	 * Yields the indices of the words below start in descending weight
+	 * order. States are explored best-first by mySubtreeMax, and a word is
+	 * only emitted once no unexplored subtree could hold a heavier word. Both
+	 * queues hold ints, so the search boxes nothing.
+	 */
+	private class WordIterator {
+		private final IntMaxHeap mySubtrees = new IntMaxHeap();
+		private final IntMaxHeap myWords = new IntMaxHeap();
+
+		WordIterator(int start) {
+			mySubtrees.add(start, mySubtreeMax[start]);
+		}
+
+		boolean hasNext() {
+			while (true) {
+				if (myWords.size() > 0
+						&& (mySubtrees.size() == 0 || myWords.peekKey() >= mySubtrees.peekKey()))
+					return true;
+				if (mySubtrees.size() == 0)
+					return false;
+				int current = mySubtrees.remove();
+				int term = myTermIndex[current];
+				if (term >= 0)
+					myWords.add(term, myWeights[term]);
+				for (int child = myFirstChild[current]; child >= 0; child = myNextSibling[child])
+					mySubtrees.add(child, mySubtreeMax[child]);
+			}
+		}
+
+		int next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return myWords.remove();
+		}
+	}
+
+	/**
+	 * A binary max-heap of ints, each with a double key.
+	 */
+	private static class IntMaxHeap {
+		private int[] myValues = new int[16];
+		private double[] myKeys = new double[16];
+		private int mySize;
+
+		int size() {
+			return mySize;
+		}
+
+		double peekKey() {
+			return myKeys[0];
+		}
+
+		void add(int value, double key) {
+			if (mySize == myValues.length) {
+				myValues = Arrays.copyOf(myValues, 2 * mySize);
+				myKeys = Arrays.copyOf(myKeys, 2 * mySize);
+			}
+			int i = mySize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (myKeys[parent] >= key)
+					break;
+				myValues[i] = myValues[parent];
+				myKeys[i] = myKeys[parent];
+				i = parent;
+			}
+			myValues[i] = value;
+			myKeys[i] = key;
+		}
+
+		int remove() {
+			int result = myValues[0];
+			int value = myValues[--mySize];
+			double key = myKeys[mySize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= mySize)
+					break;
+				if (child + 1 < mySize && myKeys[child + 1] > myKeys[child])
+					child++;
+				if (myKeys[child] <= key)
+					break;
+				myValues[i] = myValues[child];
+				myKeys[i] = myKeys[child];
+				i = child;
+			}
+			myValues[i] = value;
+			myKeys[i] = key;
+			return result;
+		}
+	}
+
+	/**
+	 * Given a prefix, returns the largest-weight word in the trie starting with
+	 * that prefix, or an empty string if none exists.
+	 *
+	 * @throws NullPointerException
+	 *             if the prefix is null
+	 */
+	public String topMatch(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatch(locate(prefix));
+	}
+
+	/**
+	 * Descends from state towards the heaviest word. A word beats its equally
+	 * heavy extensions and the first child in character order beats its
+	 * equally heavy siblings, as in TrieAutocomplete.
+	 */
+	private String topMatch(int state) {
+		if (state < 0) return "";
+		while (true) {
+			int best = -1;
+			for (int child = myFirstChild[state]; child >= 0; child = myNextSibling[child])
+				if (best < 0 || mySubtreeMax[child] > mySubtreeMax[best])
+					best = child;
+			int term = myTermIndex[state];
+			if (term >= 0 && (best < 0 || myWeights[term] >= mySubtreeMax[best]))
+				return myTerms[term];
+			if (best < 0)
+				return "";
+			state = best;
+		}
+	}
+
+	/**
+	 * Return the weight of a given term. If term is not in the dictionary,
+	 * return 0.0
+	 */
+	public double weightOf(String term) {
+		int state = locate(term);
+		if (state < 0 || myTermIndex[state] < 0)
+			return 0.0;
+		return myWeights[myTermIndex[state]];
+	}
+
+	/**
+	 * Returns a session that keeps the state reached by each prefix of its
+	 * text on a stack, so typing a character is one transition and backspace
+	 * is a pop.
+	 */
+	public AutocompleteSession newSession() {
+		return new DoubleArraySession();
+	}
+
+	/**
+	 * Entry i of the stack is the state reached by the first i characters of
+	 * the text. Once the text leaves the trie, further characters are only
+	 * counted in myMissing.
+	 */
+	private class DoubleArraySession extends AutocompleteSession {
+		private int[] myStates = new int[16];
+		private int mySize = 1;
+		private int myMissing;
+
+		DoubleArraySession() {
+			myStates[0] = myTerms.length == 0 ? -1 : ROOT;
+		}
+
+		private int current() {
+			return myMissing > 0 ? -1 : myStates[mySize - 1];
+		}
+
+		protected void pushed(char ch) {
+			int state = current();
+			int next = state < 0 ? -1 : child(state, ch);
+			if (next < 0) {
+				myMissing++;
+				return;
+			}
+			if (mySize == myStates.length)
+				myStates = Arrays.copyOf(myStates, 2 * mySize);
+			myStates[mySize++] = next;
+		}
+
+		protected void popped() {
+			if (myMissing > 0)
+				myMissing--;
+			else
+				mySize--;
+		}
+
+		public Iterable<String> topMatches(int k) {
+			return DoubleArrayTrieAutocomplete.this.topMatches(current(), k);
+		}
+
+		public String topMatch() {
+			return DoubleArrayTrieAutocomplete.this.topMatch(current());
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			return DoubleArrayTrieAutocomplete.this.topMatchesWithWeights(current(), k, buffer);
+		}
+	}
+
+	/**
+	 * Number of states, one per distinct prefix of the terms including the
+	 * empty one.
+	 */
+	public int getStateCount() {
+		return myStateCount;
+	}
+
+	/**
+	 * Number of cells in the arrays, used or not; the fraction used is
+	 * getStateCount() / getCellCount().
+	 */
+	public int getCellCount() {
+		return myCheck.length;
+	}
+}
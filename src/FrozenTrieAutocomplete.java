@@ -0,0 +1,62 @@
+import java.util.Iterator;
+
+/**
+ * An immutable TrieAutocomplete for sharing one index between many query
+ * threads. TrieAutocomplete exposes its root and Node keeps package-visible
+ * mutable fields, so nothing stops code from changing a trie while it is
+ * being read. This class builds its trie privately in the constructor, never
+ * hands it out, and only offers queries.
+ * 
+ * The trie is reached through a final field, so the Java memory model
+ * guarantees that any thread which sees a FrozenTrieAutocomplete also sees
+ * the trie fully built, with no further synchronization.
+ */
+public final class FrozenTrieAutocomplete implements Autocompletor {
+
+	private final TrieAutocomplete myTrie;
+
+	/**
+	 * Builds a frozen trie of terms, such that terms[i] has weight
+	 * weights[i].
+	 * 
+	 * @throws NullPointerException
+	 *             if either argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths
+	 */
+	public FrozenTrieAutocomplete(String[] terms, double[] weights) {
+		myTrie = new TrieAutocomplete(terms, weights);
+	}
+
+	/**
+	 * Builds a frozen trie whose nodes at depth cacheDepth or less cache
+	 * their cacheSize heaviest words, as TrieAutocomplete does.
+	 */
+	public FrozenTrieAutocomplete(String[] terms, double[] weights, int cacheSize, int cacheDepth) {
+		myTrie = new TrieAutocomplete(terms, weights, cacheSize, cacheDepth);
+	}
+
+	public Iterable<String> topMatches(String prefix, int k) {
+		return myTrie.topMatches(prefix, k);
+	}
+
+	public String topMatch(String prefix) {
+		return myTrie.topMatch(prefix);
+	}
+
+	public double weightOf(String term) {
+		return myTrie.weightOf(term);
+	}
+
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		return myTrie.topMatchesWithWeights(prefix, k, buffer);
+	}
+
+	public AutocompleteSession newSession() {
+		return myTrie.newSession();
+	}
+
+	public Iterator<String> matchIterator(String prefix) {
+		return myTrie.matchIterator(prefix);
+	}
+}
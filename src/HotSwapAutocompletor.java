@@ -0,0 +1,199 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An Autocompletor whose dictionary can be replaced while it is serving
+ * queries. reload builds a complete new index from a term file on a
+ * background thread and then swaps it in with a single volatile write:
+ * queries never wait for a rebuild, a query that started before the swap
+ * finishes on the index it started with, and every query after the swap
+ * sees the new index. The old index is garbage once its last query ends.
+ *
+ * The last reload's build time and the peak heap use while it built the new
+ * index next to the old one are kept for monitoring, and listeners can be told about each swap,
+ * for instance to clear a result cache.
+ */
+public class HotSwapAutocompletor implements Autocompletor {
+
+	private final String myClassName;
+	private volatile Autocompletor myCurrent;
+	private volatile boolean isReloading;
+
+	private volatile long myReloadCount;
+	private volatile long myLastReloadNanos;
+	private volatile long myLastPeakHeapBytes;
+
+	private final List<Runnable> mySwapListeners = new CopyOnWriteArrayList<Runnable>();
+
+	/**
+	 * Builds replacement indexes one at a time, so reloads apply in the
+	 * order they were requested.
+	 */
+	private final ExecutorService myBuilder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "autocomplete-reload");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * Loads file and builds the first index synchronously.
+	 *
+	 * @param className
+	 *            - Autocompletor class with a (String[], double[])
+	 *            constructor, used for this and every later index
+	 * @throws IOException
+	 *             if file cannot be read or is malformatted
+	 * @throws IllegalArgumentException
+	 *             if className cannot be instantiated
+	 */
+	public HotSwapAutocompletor(String className, File file) throws IOException {
+		myClassName = className;
+		myCurrent = build(file);
+	}
+
+	/**
+	 * Starts building an index from file in the background and returns a
+	 * Future that completes with the index it replaced once the new one is
+	 * serving. If loading or building fails, the Future fails and the current
+	 * index stays in place.
+	 */
+	public Future<Autocompletor> reload(final File file) {
+		return myBuilder.submit(new Callable<Autocompletor>() {
+			public Autocompletor call() throws IOException {
+				isReloading = true;
+				try {
+					List<MemoryPoolMXBean> pools = heapPools();
+					for (MemoryPoolMXBean pool : pools)
+						pool.resetPeakUsage();
+					long start = System.nanoTime();
+					Autocompletor next = build(file);
+					long peak = 0;
+					for (MemoryPoolMXBean pool : pools)
+						peak += pool.getPeakUsage().getUsed();
+					myLastPeakHeapBytes = peak;
+					Autocompletor previous = myCurrent;
+					myCurrent = next;
+					myLastReloadNanos = System.nanoTime() - start;
+					myReloadCount++;
+					for (Runnable listener : mySwapListeners)
+						listener.run();
+					return previous;
+				} finally {
+					isReloading = false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * The JVM's heap memory pools, whose peaks are reset before each build.
+	 */
+	private static List<MemoryPoolMXBean> heapPools() {
+		List<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP && pool.isValid())
+				pools.add(pool);
+		return pools;
+	}
+
+	private Autocompletor build(File file) throws IOException {
+		TermFileLoader loader = TermFileLoader.load(file);
+		try {
+			return AutocompleteMain.create(myClassName, loader.getTerms(), loader.getWeights());
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Cannot create " + myClassName, e);
+		}
+	}
+
+	/**
+	 * Registers listener to run on the reload thread right after each swap.
+	 */
+	public void addSwapListener(Runnable listener) {
+		mySwapListeners.add(listener);
+	}
+
+	/**
+	 * Stops the reload thread once any pending reloads finish. Queries keep
+	 * working on the current index.
+	 */
+	public void shutdown() {
+		myBuilder.shutdown();
+	}
+
+	/**
+	 * Returns the index currently serving queries.
+	 */
+	public Autocompletor current() {
+		return myCurrent;
+	}
+
+	/**
+	 * Returns true while a replacement index is being built.
+	 */
+	public boolean isReloading() {
+		return isReloading;
+	}
+
+	/**
+	 * Number of completed reloads.
+	 */
+	public long getReloadCount() {
+		return myReloadCount;
+	}
+
+	/**
+	 * Time the last completed reload took from starting to read the file to
+	 * swapping the new index in, in nanoseconds.
+	 */
+	public long getLastReloadNanos() {
+		return myLastReloadNanos;
+	}
+
+	/**
+	 * Peak heap use while the last completed reload built its index, with the
+	 * old index still alive. This is the sum of each heap pool's own peak,
+	 * which may have come at different moments, so it can overstate the true
+	 * peak a little but never understates it.
+	 */
+	public long getLastPeakHeapBytes() {
+		return myLastPeakHeapBytes;
+	}
+
+	public Iterable<String> topMatches(String prefix, int k) {
+		return myCurrent.topMatches(prefix, k);
+	}
+
+	public String topMatch(String prefix) {
+		return myCurrent.topMatch(prefix);
+	}
+
+	public double weightOf(String term) {
+		return myCurrent.weightOf(term);
+	}
+
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		return myCurrent.topMatchesWithWeights(prefix, k, buffer);
+	}
+
+	/**
+	 * The iterator reads from the index that was current when it was created,
+	 * even if a reload swaps in another before it is finished.
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		return myCurrent.matchIterator(prefix);
+	}
+}
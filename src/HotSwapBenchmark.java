@@ -0,0 +1,114 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Future;
+
+/**
+ * Measures what a dictionary reload costs a HotSwapAutocompletor that is
+ * serving queries. Query threads run topMatches on random prefixes while the
+ * index is reloaded from a second file, and each query's latency is recorded
+ * according to whether a reload was in progress when it started. Reports
+ * the reload time, the peak heap use while the new index was built, and query
+ * latency percentiles in steady state and during the reload.
+ *
+ * Usage: java HotSwapBenchmark file [newFile [className [threads [k]]]]
+ */
+public class HotSwapBenchmark {
+
+	/**
+	 * Written once per thread so the JIT cannot discard the queries.
+	 */
+	public static volatile long ourSink;
+
+	/**
+	 * Set once the query threads should finish; read on every query, so it
+	 * is a plain volatile read rather than a lock.
+	 */
+	private static volatile boolean ourStopped;
+
+	private static final int MAX_SAMPLES = 1 << 20;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: java HotSwapBenchmark file [newFile [className [threads [k]]]]");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		File newFile = new File(args.length >= 2 ? args[1] : args[0]);
+		String className = args.length >= 3 ? args[2] : "TrieAutocomplete";
+		int threads = args.length >= 4 ? Integer.parseInt(args[3]) : 2;
+		final int k = args.length >= 5 ? Integer.parseInt(args[4]) : 10;
+
+		final HotSwapAutocompletor auto = new HotSwapAutocompletor(className, file);
+		final String[] terms = TermFileLoader.load(file).getTerms();
+		System.out.println("Reloading " + className + " from " + newFile + " under " + threads + " query threads");
+
+		final long[][] steady = new long[threads][MAX_SAMPLES];
+		final long[][] swapping = new long[threads][MAX_SAMPLES];
+		final int[] steadyCounts = new int[threads];
+		final int[] swappingCounts = new int[threads];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread(new Runnable() {
+				public void run() {
+					Random random = new Random(id);
+					long sink = 0;
+					while (!ourStopped) {
+						String term = terms[random.nextInt(terms.length)];
+						String prefix = term.substring(0, Math.min(term.length(), 1 + random.nextInt(3)));
+						boolean reloading = auto.isReloading();
+						long start = System.nanoTime();
+						for (String match : auto.topMatches(prefix, k))
+							sink += match.length();
+						long latency = System.nanoTime() - start;
+						if (reloading && swappingCounts[id] < MAX_SAMPLES)
+							swapping[id][swappingCounts[id]++] = latency;
+						else if (!reloading && steadyCounts[id] < MAX_SAMPLES)
+							steady[id][steadyCounts[id]++] = latency;
+					}
+					ourSink += sink;
+				}
+			});
+			workers[t].start();
+		}
+
+		// let the queries reach compiled code before reloading
+		Thread.sleep(2000);
+		Future<Autocompletor> reload = auto.reload(newFile);
+		reload.get();
+		Thread.sleep(1000);
+		ourStopped = true;
+		for (Thread worker : workers)
+			worker.join();
+		auto.shutdown();
+
+		System.out.printf("Reload time        %10.1f ms%n", auto.getLastReloadNanos() / 1E6);
+		System.out.printf("Peak heap          %10.1f MB%n", auto.getLastPeakHeapBytes() / 1E6);
+		report("Steady state", steady, steadyCounts);
+		report("During reload", swapping, swappingCounts);
+	}
+
+	/**
+	 * Prints the count and the 50th, 99th and 100th percentile latency of
+	 * every thread's samples together.
+	 */
+	private static void report(String label, long[][] samples, int[] counts) {
+		int total = 0;
+		for (int count : counts)
+			total += count;
+		long[] all = new long[total];
+		int pos = 0;
+		for (int t = 0; t < samples.length; t++) {
+			System.arraycopy(samples[t], 0, all, pos, counts[t]);
+			pos += counts[t];
+		}
+		if (total == 0) {
+			System.out.printf("%-18s no queries%n", label);
+			return;
+		}
+		Arrays.sort(all);
+		System.out.printf("%-18s %8d queries - p50 %8.1f us - p99 %8.1f us - max %8.1f us%n", label, total,
+				all[total / 2] / 1E3, all[(int) (total * 0.99)] / 1E3, all[total - 1] / 1E3);
+	}
+}
@@ -0,0 +1,196 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves a fully built BinarySearchAutocomplete to a binary file and loads it
+ * back without sorting the terms or rebuilding the range-max index. Loading
+ * is still a full deserialization: every word is decoded into a String and
+ * the weights and range-max table are copied onto the heap, in one linear
+ * pass.
+ *
+ * Layout, big-endian:
+ *
+ * <pre>
+ * header   int magic, int version,
+ *          long source length, long source last-modified, long source CRC32,
+ *          int n, int pool bytes
+ * payload  int[n + 1] offsets into the pool, byte[] UTF-8 pool of the sorted
+ *          words, double[n] weights, int[] RangeMaxIndex table
+ * trailer  long CRC32 of the payload
+ * </pre>
+ *
+ * The source fields fingerprint the term file the index was built from, so
+ * a snapshot left behind by an older dictionary can be recognised as stale.
+ */
+public class IndexSnapshot {
+
+	static final int MAGIC = 0x41435331; // "ACS1"
+	static final int VERSION = 2;
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 4 + 4;
+
+	/**
+	 * Writes index to snapshot, recording source as the file it was built
+	 * from. The snapshot is written to a temporary file first and moved over
+	 * the old one atomically, so readers see either the old snapshot or the
+	 * new one, never a partial one or none.
+	 *
+	 * @throws IOException
+	 *             if source cannot be read or snapshot cannot be written
+	 */
+	public static void write(BinarySearchAutocomplete index, File source, File snapshot) throws IOException {
+		long[] fingerprint = fingerprint(source);
+		String[] words = index.myWords;
+		byte[][] encoded = new byte[words.length][];
+		long poolBytes = 0;
+		for (int i = 0; i < words.length; i++) {
+			encoded[i] = words[i].getBytes(StandardCharsets.UTF_8);
+			poolBytes += encoded[i].length;
+		}
+		if (poolBytes > Integer.MAX_VALUE)
+			throw new IOException("Too much text for one snapshot");
+
+		File temp = new File(snapshot.getPath() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(temp)) {
+			DataOutputStream header = new DataOutputStream(new BufferedOutputStream(file));
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeLong(fingerprint[0]);
+			header.writeLong(fingerprint[1]);
+			header.writeLong(fingerprint[2]);
+			header.writeInt(words.length);
+			header.writeInt((int) poolBytes);
+			header.flush();
+
+			CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+			int offset = 0;
+			out.writeInt(offset);
+			for (byte[] word : encoded) {
+				offset += word.length;
+				out.writeInt(offset);
+			}
+			for (byte[] word : encoded)
+				out.write(word);
+			for (double weight : index.myWeights)
+				out.writeDouble(weight);
+			for (int entry : index.myIndex.table())
+				out.writeInt(entry);
+			out.flush();
+			long checksum = checked.getChecksum().getValue();
+			header.writeLong(checksum);
+			header.flush();
+		}
+		Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Maps snapshot read-only and returns the index it holds, decoded and
+	 * copied onto the heap; the mapping is not used once this returns.
+	 *
+	 * @throws IOException
+	 *             if snapshot cannot be read, is not a snapshot of this
+	 *             version, or fails its checksum
+	 */
+	public static BinarySearchAutocomplete load(File snapshot) throws IOException {
+		MappedByteBuffer buffer = TermFileLoader.map(snapshot);
+		int n = readHeader(buffer, snapshot);
+		int poolBytes = buffer.getInt(HEADER_BYTES - 4);
+		long payloadBytes = 4L * (n + 1) + poolBytes + 8L * n + 4L * RangeMaxIndex.tableLength(n);
+		if (HEADER_BYTES + payloadBytes + 8 != buffer.limit())
+			throw new IOException("Truncated snapshot " + snapshot);
+
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(HEADER_BYTES).limit(HEADER_BYTES + (int) payloadBytes);
+		CRC32 crc = new CRC32();
+		crc.update(payload.slice());
+		if (crc.getValue() != buffer.getLong(HEADER_BYTES + (int) payloadBytes))
+			throw new IOException("Checksum mismatch in " + snapshot);
+
+		int[] offsets = new int[n + 1];
+		payload.asIntBuffer().get(offsets);
+		int pool = HEADER_BYTES + 4 * (n + 1);
+		byte[] text = new byte[poolBytes];
+		payload.position(pool);
+		payload.get(text);
+		String[] words = new String[n];
+		for (int i = 0; i < n; i++)
+			words[i] = new String(text, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+		double[] weights = new double[n];
+		payload.asDoubleBuffer().get(weights);
+		payload.position(pool + poolBytes + 8 * n);
+		int[] table = new int[RangeMaxIndex.tableLength(n)];
+		payload.asIntBuffer().get(table);
+		return new BinarySearchAutocomplete(words, weights, new RangeMaxIndex(weights, table));
+	}
+
+	/**
+	 * Returns true if snapshot exists, is readable as a snapshot of this
+	 * version, and was built from source as it is now.
+	 */
+	public static boolean isCurrent(File snapshot, File source) throws IOException {
+		if (!snapshot.isFile() || snapshot.length() < HEADER_BYTES)
+			return false;
+		MappedByteBuffer buffer = TermFileLoader.map(snapshot);
+		try {
+			readHeader(buffer, snapshot);
+		} catch (IOException e) {
+			return false;
+		}
+		long[] fingerprint = fingerprint(source);
+		return buffer.getLong(8) == fingerprint[0] && buffer.getLong(16) == fingerprint[1]
+				&& buffer.getLong(24) == fingerprint[2];
+	}
+
+	/**
+	 * Loads the index for source from snapshot if the snapshot is current;
+	 * otherwise builds it from source and writes a fresh snapshot. A
+	 * snapshot that cannot be read, or fails its checks, is replaced the same
+	 * way, so only a problem with source itself is thrown.
+	 */
+	public static BinarySearchAutocomplete loadOrBuild(File source, File snapshot) throws IOException {
+		try {
+			if (isCurrent(snapshot, source))
+				return load(snapshot);
+		} catch (IOException e) {
+			// damaged or truncated; rebuild it below
+		}
+		TermFileLoader loader = TermFileLoader.load(source);
+		BinarySearchAutocomplete index = new BinarySearchAutocomplete(loader.getTerms(), loader.getWeights());
+		write(index, source, snapshot);
+		return index;
+	}
+
+	/**
+	 * Checks the magic number and version, and returns the term count.
+	 */
+	private static int readHeader(ByteBuffer buffer, File snapshot) throws IOException {
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC)
+			throw new IOException("Not a snapshot: " + snapshot);
+		if (buffer.getInt(4) != VERSION)
+			throw new IOException("Unsupported snapshot version " + buffer.getInt(4) + " in " + snapshot);
+		int n = buffer.getInt(HEADER_BYTES - 8);
+		if (n < 0 || buffer.getInt(HEADER_BYTES - 4) < 0)
+			throw new IOException("Corrupt snapshot header in " + snapshot);
+		return n;
+	}
+
+	/**
+	 * Length, last-modified time and CRC32 of the contents of source.
+	 */
+	static long[] fingerprint(File source) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(TermFileLoader.map(source));
+		return new long[] { source.length(), source.lastModified(), crc.getValue() };
+	}
+}
@@ -0,0 +1,645 @@
+import java.util.*;
+
+/**
+ * Succinct trie implementation of Autocompletor, for dictionaries that must
+ * fit in a small heap. The trie has one node per distinct prefix, like
+ * TrieAutocomplete, numbered in breadth-first order, but its shape is kept
+ * in a LOUDS bit sequence of about two bits per node: for each node in
+ * order, a one per child followed by a zero. The children of a node are
+ * then consecutive numbers, found with one select on the bits, and a
+ * node's parent with another. No term strings are kept; a word is spelled
+ * out by walking up from its last node.
+ *
+ * Each node keeps only its edge label, coded by how common the character
+ * is and packed into as few bits as the alphabet needs. Words are ranked by
+ * descending weight, ties going to the lexicographically first, and the
+ * best-first search compares these ranks instead of weights. The rank of
+ * the best word below a node is stored only at nodes that end a word or
+ * have more than one child; every other node lies on a chain with one way
+ * down, and the search follows the chain to the node that has it. Weights
+ * are stored once per word, in rank order.
+ *
+ * Nothing is modified after construction, so a constructed instance can be
+ * queried from many threads at once.
+ */
+public class LoudsTrieAutocomplete implements Autocompletor {
+
+	private static final int ROOT = 0;
+
+	/**
+	 * Shape of the trie: "10" for a virtual parent of the root, then for
+	 * each node a one per child and a zero. Node v is the one preceded by v
+	 * others, and its children follow the zero preceded by v others.
+	 */
+	private final RankSelectBitVector myLouds;
+
+	/**
+	 * Code of the character on the edge into each node; the root's is 0.
+	 */
+	private final PackedInts myLabels;
+
+	/**
+	 * Code of every character, indexed by the character, with -1 for
+	 * characters that occur in no term; and the character of every code.
+	 */
+	private final int[] myCodes;
+	private final char[] myChars;
+
+	/**
+	 * Set for nodes that end a word; rank1 numbers them for myWordRanks.
+	 */
+	private final RankSelectBitVector myTerminals;
+	private final PackedInts myWordRanks;
+
+	/**
+	 * Set for nodes that end a word or have more than one child; rank1
+	 * numbers them for myBestRanks, the rank of the best word at or below.
+	 */
+	private final RankSelectBitVector myMarked;
+	private final PackedInts myBestRanks;
+
+	/**
+	 * Weight of the word of each rank, so in descending order.
+	 */
+	private final double[] myWeights;
+
+	private final int myNodeCount;
+
+	/**
+	 * Builds the succinct trie of terms, such that terms[i] has weight
+	 * weights[i].
+	 *
+	 * @throws NullPointerException
+	 *             if either argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths or a term is
+	 *             duplicated
+	 */
+	public LoudsTrieAutocomplete(String[] terms, double[] weights) {
+		if (terms == null || weights == null)
+			throw new NullPointerException("One or more arguments null");
+		if (terms.length != weights.length)
+			throw new IllegalArgumentException("Terms and weights are not the same length");
+		int[] order = TermSort.sortedOrder(terms);
+		String[] sorted = new String[terms.length];
+		double[] sortedWeights = new double[terms.length];
+		int nodes = 1;
+		for (int i = 0; i < order.length; i++) {
+			sorted[i] = terms[order[i]];
+			sortedWeights[i] = weights[order[i]];
+			int common = 0;
+			if (i > 0) {
+				if (sorted[i].equals(sorted[i - 1]))
+					throw new IllegalArgumentException("Duplicate term " + sorted[i]);
+				int limit = Math.min(sorted[i].length(), sorted[i - 1].length());
+				while (common < limit && sorted[i].charAt(common) == sorted[i - 1].charAt(common))
+					common++;
+			}
+			// each term adds a node per character past the previous one
+			nodes += sorted[i].length() - common;
+		}
+		myNodeCount = nodes;
+
+		// rank words by descending weight; RangeMaxIndex breaks ties towards
+		// the lower index, so rank ties the same way
+		RangeMaxIndex heaviest = new RangeMaxIndex(sortedWeights);
+		int[] ranks = new int[sorted.length];
+		myWeights = new double[sorted.length];
+		int rank = 0;
+		for (PrimitiveIterator.OfInt it = heaviest.descending(0, sorted.length - 1); it.hasNext();) {
+			int term = it.nextInt();
+			ranks[term] = rank;
+			myWeights[rank++] = sortedWeights[term];
+		}
+
+		myCodes = new int[Character.MAX_VALUE + 1];
+		myChars = assignCodes(sorted, myCodes);
+		int rankBits = bitsFor(sorted.length - 1);
+		myLabels = new PackedInts(nodes, bitsFor(myChars.length - 1));
+		myWordRanks = new PackedInts(sorted.length, rankBits);
+		long[] louds = new long[(2 * nodes + 1 + 63) / 64];
+		long[] terminalBits = new long[(nodes + 63) / 64];
+		long[] markedBits = new long[(nodes + 63) / 64];
+		int[] bestRanks = new int[16];
+		int markedCount = 0;
+
+		// nodes are laid out a level at a time; each node of a level covers
+		// the range [lo, hi) of the terms that start with its prefix
+		louds[0] = 1;
+		int bit = 2;
+		int words = 0;
+		int nextNode = 1;
+		int[] levelLo = { 0 };
+		int[] levelHi = { sorted.length };
+		int levelSize = 1;
+		int node = 0;
+		for (int depth = 0; levelSize > 0; depth++) {
+			int[] nextLo = new int[16];
+			int[] nextHi = new int[16];
+			int nextSize = 0;
+			for (int n = 0; n < levelSize; n++, node++) {
+				int lo = levelLo[n];
+				int hi = levelHi[n];
+				int first = lo;
+				boolean terminal = lo < hi && sorted[lo].length() == depth;
+				if (terminal) {
+					terminalBits[node >>> 6] |= 1L << node;
+					myWordRanks.set(words++, ranks[lo]);
+					first++;
+				}
+				int children = 0;
+				for (int i = first; i < hi;) {
+					char ch = sorted[i].charAt(depth);
+					int end = i + 1;
+					while (end < hi && sorted[end].charAt(depth) == ch)
+						end++;
+					if (nextSize == nextLo.length) {
+						nextLo = Arrays.copyOf(nextLo, 2 * nextSize);
+						nextHi = Arrays.copyOf(nextHi, 2 * nextSize);
+					}
+					nextLo[nextSize] = i;
+					nextHi[nextSize++] = end;
+					myLabels.set(nextNode++, myCodes[ch]);
+					louds[bit >>> 6] |= 1L << bit;
+					bit++;
+					children++;
+					i = end;
+				}
+				bit++;
+				if (terminal || children > 1) {
+					markedBits[node >>> 6] |= 1L << node;
+					if (markedCount == bestRanks.length)
+						bestRanks = Arrays.copyOf(bestRanks, 2 * markedCount);
+					bestRanks[markedCount++] = ranks[heaviest.maxIndex(lo, hi - 1)];
+				}
+			}
+			levelLo = nextLo;
+			levelHi = nextHi;
+			levelSize = nextSize;
+		}
+		myLouds = new RankSelectBitVector(louds, 2 * nodes + 1);
+		myTerminals = new RankSelectBitVector(terminalBits, nodes);
+		myMarked = new RankSelectBitVector(markedBits, nodes);
+		myBestRanks = new PackedInts(markedCount, rankBits);
+		for (int i = 0; i < markedCount; i++)
+			myBestRanks.set(i, bestRanks[i]);
+	}
+
+	/**
+	 * Numbers the characters of terms from 0 in descending order of
+	 * frequency, filling codes, and returns the character of each code.
+	 */
+	private static char[] assignCodes(String[] terms, int[] codes) {
+		int[] counts = new int[Character.MAX_VALUE + 1];
+		int distinct = 0;
+		for (String term : terms) {
+			for (int i = 0; i < term.length(); i++) {
+				if (counts[term.charAt(i)]++ == 0)
+					distinct++;
+			}
+		}
+		Integer[] chars = new Integer[distinct];
+		int next = 0;
+		for (int ch = 0; ch < counts.length; ch++)
+			if (counts[ch] > 0)
+				chars[next++] = ch;
+		Arrays.sort(chars, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Integer.compare(counts[b], counts[a]);
+			}
+		});
+		Arrays.fill(codes, -1);
+		char[] result = new char[distinct];
+		for (int i = 0; i < distinct; i++) {
+			codes[chars[i]] = i;
+			result[i] = (char) (int) chars[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Bits needed to store every value from 0 to max, at least one.
+	 */
+	private static int bitsFor(int max) {
+		if (max <= 0)
+			return 1;
+		return 32 - Integer.numberOfLeadingZeros(max);
+	}
+
+	/**
+	 * Fixed-width unsigned ints packed end to end in longs.
+	 */
+	private static class PackedInts {
+		private final long[] myBits;
+		private final int myWidth;
+		private final long myMask;
+
+		PackedInts(int size, int width) {
+			myBits = new long[(int) (((long) size * width + 63) / 64)];
+			myWidth = width;
+			myMask = (1L << width) - 1;
+		}
+
+		int get(int i) {
+			long bit = (long) i * myWidth;
+			int word = (int) (bit >>> 6);
+			int offset = (int) bit & 63;
+			long value = myBits[word] >>> offset;
+			if (offset + myWidth > 64)
+				value |= myBits[word + 1] << (64 - offset);
+			return (int) (value & myMask);
+		}
+
+		void set(int i, int value) {
+			long bit = (long) i * myWidth;
+			int word = (int) (bit >>> 6);
+			int offset = (int) bit & 63;
+			myBits[word] |= (value & myMask) << offset;
+			if (offset + myWidth > 64)
+				myBits[word + 1] |= (value & myMask) >>> (64 - offset);
+		}
+
+		long sizeInBytes() {
+			return 8L * myBits.length;
+		}
+	}
+
+	/**
+	 * Position in myLouds of the first child of node; its children are the
+	 * ones from there up to the next zero.
+	 */
+	private int childrenStart(int node) {
+		return myLouds.select0(node) + 1;
+	}
+
+	/**
+	 * The node that the one at position bit in myLouds stands for.
+	 */
+	private static int nodeAt(int bit, int parent) {
+		// parent + 1 zeros precede the parent's children
+		return bit - parent - 1;
+	}
+
+	private int parent(int node) {
+		return myLouds.select1(node) - node - 1;
+	}
+
+	/**
+	 * The child of node by ch, or -1 if there is none. Children are in
+	 * character order, so they are binary searched.
+	 */
+	private int child(int node, char ch) {
+		int code = myCodes[ch];
+		if (code < 0)
+			return -1;
+		int start = childrenStart(node);
+		int lo = nodeAt(start, node);
+		int hi = nodeAt(myLouds.nextZero(start), node) - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			char label = myChars[myLabels.get(mid)];
+			if (label < ch)
+				lo = mid + 1;
+			else if (label > ch)
+				hi = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * The node whose prefix is prefix, or -1 if no word starts with prefix.
+	 */
+	private int locate(String prefix) {
+		if (myWeights.length == 0)
+			return -1;
+		int node = ROOT;
+		for (int i = 0; i < prefix.length() && node >= 0; i++)
+			node = child(node, prefix.charAt(i));
+		return node;
+	}
+
+	private boolean isTerminal(int node) {
+		return myTerminals.get(node);
+	}
+
+	/**
+	 * Rank of the word ending at a terminal node.
+	 */
+	private int wordRank(int node) {
+		return myWordRanks.get(myTerminals.rank1(node));
+	}
+
+	/**
+	 * Follows the chain of unmarked nodes below node, each of which has a
+	 * single child and no word, to the marked node that ends it.
+	 */
+	private int marked(int node) {
+		while (!myMarked.get(node))
+			node = nodeAt(childrenStart(node), node);
+		return node;
+	}
+
+	/**
+	 * Rank of the best word at or below a marked node.
+	 */
+	private int bestRank(int node) {
+		return myBestRanks.get(myMarked.rank1(node));
+	}
+
+	/**
+	 * Spells the word ending at node, which lies at or below start, whose
+	 * prefix is prefix.
+	 */
+	private String wordOf(int node, int start, String prefix) {
+		StringBuilder suffix = new StringBuilder();
+		for (; node != start; node = parent(node))
+			suffix.append(myChars[myLabels.get(node)]);
+		return prefix + suffix.reverse();
+	}
+
+	/**
+	 * Required by the Autocompletor interface. Returns the k words with the
+	 * largest weight which start with prefix, in descending weight order, or
+	 * all such words if there are fewer than k.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterable<String> topMatches(String prefix, int k) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatches(locate(prefix), prefix, k);
+	}
+
+	private ArrayList<String> topMatches(int start, String prefix, int k) {
+		ArrayList<String> arr = new ArrayList<String>();
+		if (k <= 0 || start < 0) return arr;
+		WordIterator words = new WordIterator(start);
+		while (arr.size() < k && words.hasNext())
+			arr.add(wordOf(words.next(), start, prefix));
+		return arr;
+	}
+
+	/**
+	 * Fills buffer with the k heaviest words starting with prefix and their
+	 * weights, from the same search as topMatches, and returns it.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatchesWithWeights(locate(prefix), prefix, k, buffer);
+	}
+
+	private WeightedMatches topMatchesWithWeights(int start, String prefix, int k, WeightedMatches buffer) {
+		buffer.clear();
+		if (k <= 0 || start < 0) return buffer;
+		WordIterator words = new WordIterator(start);
+		while (buffer.size() < k && words.hasNext()) {
+			int node = words.next();
+			buffer.add(wordOf(node, start, prefix), myWeights[wordRank(node)]);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns every word starting with prefix in descending weight order,
+	 * found lazily by the search topMatches uses.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterator<String> matchIterator(final String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		final int start = locate(prefix);
+		if (start < 0) return Collections.<String>emptyIterator();
+		final WordIterator words = new WordIterator(start);
+		return new Iterator<String>() {
+			public boolean hasNext() {
+				return words.hasNext();
+			}
+
+			public String next() {
+				return wordOf(words.next(), start, prefix);
+			}
+		};
+	}
+
+	/**
+	 * Yields the nodes of the words below start in rank order. The queue
+	 * holds marked nodes keyed by their best rank and terminal nodes, stored
+	 * complemented, keyed by their own rank. Ranks are distinct, and a
+	 * word's rank is never better than that of a marked node above it, so
+	 * the word at the head of the queue is always the next one.
+	 */
+	private class WordIterator {
+		private final IntMinHeap myQueue = new IntMinHeap();
+
+		WordIterator(int start) {
+			int node = marked(start);
+			myQueue.add(node, bestRank(node));
+		}
+
+		boolean hasNext() {
+			while (myQueue.size() > 0 && myQueue.peekValue() >= 0) {
+				int current = myQueue.remove();
+				if (isTerminal(current))
+					myQueue.add(~current, wordRank(current));
+				int first = childrenStart(current);
+				int end = myLouds.nextZero(first);
+				for (int bit = first; bit < end; bit++) {
+					int child = marked(nodeAt(bit, current));
+					myQueue.add(child, bestRank(child));
+				}
+			}
+			return myQueue.size() > 0;
+		}
+
+		int next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return ~myQueue.remove();
+		}
+	}
+
+	/**
+	 * A binary min-heap of ints, each with an int key.
+	 */
+	private static class IntMinHeap {
+		private int[] myValues = new int[16];
+		private int[] myKeys = new int[16];
+		private int mySize;
+
+		int size() {
+			return mySize;
+		}
+
+		int peekValue() {
+			return myValues[0];
+		}
+
+		void add(int value, int key) {
+			if (mySize == myValues.length) {
+				myValues = Arrays.copyOf(myValues, 2 * mySize);
+				myKeys = Arrays.copyOf(myKeys, 2 * mySize);
+			}
+			int i = mySize++;
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (myKeys[parent] <= key)
+					break;
+				myValues[i] = myValues[parent];
+				myKeys[i] = myKeys[parent];
+				i = parent;
+			}
+			myValues[i] = value;
+			myKeys[i] = key;
+		}
+
+		int remove() {
+			int result = myValues[0];
+			int value = myValues[--mySize];
+			int key = myKeys[mySize];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= mySize)
+					break;
+				if (child + 1 < mySize && myKeys[child + 1] < myKeys[child])
+					child++;
+				if (myKeys[child] >= key)
+					break;
+				myValues[i] = myValues[child];
+				myKeys[i] = myKeys[child];
+				i = child;
+			}
+			myValues[i] = value;
+			myKeys[i] = key;
+			return result;
+		}
+	}
+
+	/**
+	 * Given a prefix, returns the largest-weight word in the trie starting with
+	 * that prefix, or an empty string if none exists.
+	 *
+	 * @throws NullPointerException
+	 *             if the prefix is null
+	 */
+	public String topMatch(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatch(locate(prefix), prefix);
+	}
+
+	/**
+	 * Descends from start through the marked nodes whose best rank is that
+	 * of start until reaching the word with that rank.
+	 */
+	private String topMatch(int start, String prefix) {
+		if (start < 0) return "";
+		int node = marked(start);
+		int best = bestRank(node);
+		while (!isTerminal(node) || wordRank(node) != best) {
+			int first = childrenStart(node);
+			int end = myLouds.nextZero(first);
+			for (int bit = first; bit < end; bit++) {
+				int child = marked(nodeAt(bit, node));
+				if (bestRank(child) == best) {
+					node = child;
+					break;
+				}
+			}
+		}
+		return wordOf(node, start, prefix);
+	}
+
+	/**
+	 * Return the weight of a given term. If term is not in the dictionary,
+	 * return 0.0
+	 */
+	public double weightOf(String term) {
+		int node = locate(term);
+		if (node < 0 || !isTerminal(node))
+			return 0.0;
+		return myWeights[wordRank(node)];
+	}
+
+	/**
+	 * Returns a session that keeps the node reached by each prefix of its
+	 * text on a stack, so typing a character is one child lookup and
+	 * backspace is a pop.
+	 */
+	public AutocompleteSession newSession() {
+		return new LoudsSession();
+	}
+
+	/**
+	 * Entry i of the stack is the node reached by the first i characters of
+	 * the text. Once the text leaves the trie, further characters are only
+	 * counted in myMissing.
+	 */
+	private class LoudsSession extends AutocompleteSession {
+		private int[] myNodes = new int[16];
+		private int mySize = 1;
+		private int myMissing;
+
+		LoudsSession() {
+			myNodes[0] = myWeights.length == 0 ? -1 : ROOT;
+		}
+
+		private int current() {
+			return myMissing > 0 ? -1 : myNodes[mySize - 1];
+		}
+
+		protected void pushed(char ch) {
+			int node = current();
+			int next = node < 0 ? -1 : child(node, ch);
+			if (next < 0) {
+				myMissing++;
+				return;
+			}
+			if (mySize == myNodes.length)
+				myNodes = Arrays.copyOf(myNodes, 2 * mySize);
+			myNodes[mySize++] = next;
+		}
+
+		protected void popped() {
+			if (myMissing > 0)
+				myMissing--;
+			else
+				mySize--;
+		}
+
+		public Iterable<String> topMatches(int k) {
+			return LoudsTrieAutocomplete.this.topMatches(current(), getText(), k);
+		}
+
+		public String topMatch() {
+			return LoudsTrieAutocomplete.this.topMatch(current(), getText());
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			return LoudsTrieAutocomplete.this.topMatchesWithWeights(current(), getText(), k, buffer);
+		}
+	}
+
+	/**
+	 * Number of nodes, one per distinct prefix of the terms including the
+	 * empty one.
+	 */
+	public int getNodeCount() {
+		return myNodeCount;
+	}
+
+	/**
+	 * Bytes taken by the arrays of the index, not counting object headers or
+	 * the character code table.
+	 */
+	public long getIndexBytes() {
+		return myLouds.sizeInBytes() + myTerminals.sizeInBytes() + myMarked.sizeInBytes()
+				+ myLabels.sizeInBytes() + myWordRanks.sizeInBytes() + myBestRanks.sizeInBytes()
+				+ 8L * myWeights.length;
+	}
+}
@@ -1,6 +1,5 @@
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Node in a general trie, each representing a character. Each node will keep
@@ -13,7 +12,7 @@ public class Node implements Comparable<Node> {
 	/**
 	 * The character this Node represents
 	 */
-	String myInfo;
+	char myChar;
 
 	/**
 	 * Whether or not this node represents the last character in a Node
@@ -21,10 +20,11 @@ public class Node implements Comparable<Node> {
 	boolean isWord;
 
 	/**
-	 * Only non-null/interpretable if isWord is true. Holds the entire word
-	 * ending at this Node.
+	 * Only interpretable if isWord is true. Index of the word ending at this
+	 * Node in its trie's term pool, so the word's text is stored once rather
+	 * than referenced from every node.
 	 */
-	String myWord;
+	int myTermId = -1;
 
 	/**
 	 * Only positive/interpretable if isWord is true. Represents the weight of
@@ -38,27 +38,54 @@ public class Node implements Comparable<Node> {
 	 */
 	double mySubtreeMaxWeight;
 
-	Map<Character, Node> children;
+	/**
+	 * When TrieAutocomplete caches top words, the heaviest word nodes in this
+	 * subtree in descending weight order, otherwise null.
+	 */
+	Node[] myTopWords;
+
+	/**
+	 * The heaviest word node in this subtree, possibly this Node itself, or
+	 * null if the subtree holds no words. topMatch reads it directly instead
+	 * of descending.
+	 */
+	Node myBestWord;
+
+	/**
+	 * Children are kept in parallel arrays sorted by character, so looking up
+	 * a child never boxes a char or hashes. Only the first childCount entries
+	 * are valid.
+	 */
+	char[] childKeys = NO_KEYS;
+	Node[] childNodes = NO_NODES;
+	int childCount;
 	Node parent;
 
+	/**
+	 * At or below this many children a linear scan beats binary search.
+	 */
+	static final int LINEAR_SCAN_LIMIT = 8;
+
+	private static final char[] NO_KEYS = new char[0];
+	private static final Node[] NO_NODES = new Node[0];
+
 	public Node(char character, Node parentNode, double subtreeMaximumWeight) {
-		myInfo = "" + character;
+		myChar = character;
 		isWord = false;
-		children = new HashMap<Character, Node>();
 		parent = parentNode;
 		mySubtreeMaxWeight = subtreeMaximumWeight;
 	}
 
 	/**
-	 * Set the word that this node is the last character of. Only do this if the
-	 * Node's character ends a word.
+	 * Set the term pool index of the word that this node is the last
+	 * character of. Only do this if the Node's character ends a word.
 	 */
-	public void setWord(String word) {
-		myWord = word;
+	public void setTermId(int id) {
+		myTermId = id;
 	}
 
-	public String getWord() {
-		return myWord;
+	public int getTermId() {
+		return myTermId;
 	}
 
 	/**
@@ -77,12 +104,78 @@ public class Node implements Comparable<Node> {
 	 * Returns null if key is not a valid child.
 	 */
 	Node getChild(char ch) {
-		return children.get(ch);
+		int index = indexOfChild(ch);
+		return index < 0 ? null : childNodes[index];
+	}
+
+	/**
+	 * Adds child under ch, keeping childKeys sorted. The caller must make sure
+	 * ch is not already a key.
+	 */
+	void addChild(char ch, Node child) {
+		int index = -indexOfChild(ch) - 1;
+		if (childCount == childKeys.length) {
+			int capacity = childCount == 0 ? 1 : childCount * 2;
+			childKeys = Arrays.copyOf(childKeys, capacity);
+			childNodes = Arrays.copyOf(childNodes, capacity);
+		}
+		System.arraycopy(childKeys, index, childKeys, index + 1, childCount - index);
+		System.arraycopy(childNodes, index, childNodes, index + 1, childCount - index);
+		childKeys[index] = ch;
+		childNodes[index] = child;
+		childCount++;
+	}
+
+	/**
+	 * Adds child under ch, which must be greater than every key already
+	 * present, so nothing is searched or shifted. Used when building from
+	 * sorted words.
+	 */
+	void appendChild(char ch, Node child) {
+		if (childCount == childKeys.length) {
+			int capacity = childCount == 0 ? 1 : childCount * 2;
+			childKeys = Arrays.copyOf(childKeys, capacity);
+			childNodes = Arrays.copyOf(childNodes, capacity);
+		}
+		childKeys[childCount] = ch;
+		childNodes[childCount] = child;
+		childCount++;
+	}
+
+	/**
+	 * Removes the child under ch, keeping childKeys sorted. Does nothing if ch
+	 * is not a key.
+	 */
+	void removeChild(char ch) {
+		int index = indexOfChild(ch);
+		if (index < 0)
+			return;
+		System.arraycopy(childKeys, index + 1, childKeys, index, childCount - index - 1);
+		System.arraycopy(childNodes, index + 1, childNodes, index, childCount - index - 1);
+		childCount--;
+		childNodes[childCount] = null;
+	}
+
+	/**
+	 * Returns the position of ch in childKeys, or (-(insertion point) - 1) if
+	 * ch is not a key, following the Arrays.binarySearch convention.
+	 */
+	int indexOfChild(char ch) {
+		if (childCount <= LINEAR_SCAN_LIMIT) {
+			for (int i = 0; i < childCount; i++) {
+				if (childKeys[i] == ch)
+					return i;
+				if (childKeys[i] > ch)
+					return -i - 1;
+			}
+			return -childCount - 1;
+		}
+		return Arrays.binarySearch(childKeys, 0, childCount, ch);
 	}
 
 	@Override
 	public String toString() {
-		return myInfo + " (" + myWeight + ")";
+		return myChar + " (" + myWeight + ")";
 	}
 
 	@Override
@@ -0,0 +1,273 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A parallel version of BruteAutocomplete: every query still scans every
+ * term, but the scan is split across a fork-join pool. Each leaf task keeps
+ * a bounded min-heap of the k heaviest matches in its slice, and the heaps
+ * are merged as the tasks join, so a query allocates O(k) per task no
+ * matter how many terms match.
+ *
+ * The terms are packed into one char[] with an offsets array instead of
+ * being kept as separate Strings, so a scan walks contiguous memory and each
+ * prefix test is a single ranged Arrays.equals, which the JIT compiles to a
+ * vectorized comparison.
+ *
+ * Immutable once constructed, so safe to query from many threads; queries
+ * from different threads share the pool.
+ */
+public class ParallelBruteAutocomplete implements Autocompletor {
+
+	/**
+	 * Slices of at most this many terms are scanned without forking.
+	 */
+	static final int LEAF_SIZE = 1 << 13;
+
+	private final String[] myWords;
+	private final double[] myWeights;
+
+	/**
+	 * The characters of every word back to back; word i is
+	 * myChars[myOffsets[i] .. myOffsets[i + 1]).
+	 */
+	private final char[] myChars;
+	private final int[] myOffsets;
+
+	private final ForkJoinPool myPool;
+
+	/**
+	 * Builds the index and runs queries on the common fork-join pool.
+	 *
+	 * @throws NullPointerException
+	 *             if either argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths, a weight is
+	 *             negative or a term is duplicated
+	 */
+	public ParallelBruteAutocomplete(String[] terms, double[] weights) {
+		this(terms, weights, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds the index and runs queries on pool.
+	 */
+	public ParallelBruteAutocomplete(String[] terms, double[] weights, ForkJoinPool pool) {
+		if (terms == null || weights == null || pool == null)
+			throw new NullPointerException("One or more arguments null");
+		if (terms.length != weights.length)
+			throw new IllegalArgumentException("terms and weights are not the same length");
+		HashSet<String> words = new HashSet<String>();
+		long length = 0;
+		for (int i = 0; i < terms.length; i++) {
+			if (weights[i] < 0)
+				throw new IllegalArgumentException("Negative weight " + weights[i]);
+			if (!words.add(terms[i]))
+				throw new IllegalArgumentException("Duplicate input terms");
+			length += terms[i].length();
+		}
+		if (length > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too much text to pack");
+		myWords = terms.clone();
+		myWeights = weights.clone();
+		myChars = new char[(int) length];
+		myOffsets = new int[terms.length + 1];
+		for (int i = 0; i < terms.length; i++) {
+			terms[i].getChars(0, terms[i].length(), myChars, myOffsets[i]);
+			myOffsets[i + 1] = myOffsets[i] + terms[i].length();
+		}
+		myPool = pool;
+	}
+
+	public Iterable<String> topMatches(String prefix, int k) {
+		TopK top = scan(prefix, k);
+		ArrayList<String> ret = new ArrayList<String>(top.mySize);
+		for (int i : top.descending())
+			ret.add(myWords[i]);
+		return ret;
+	}
+
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		TopK top = scan(prefix, k);
+		buffer.clear();
+		for (int i : top.descending())
+			buffer.add(myWords[i], myWeights[i]);
+		return buffer;
+	}
+
+	public String topMatch(String prefix) {
+		TopK top = scan(prefix, 1);
+		return top.mySize == 0 ? "" : myWords[top.myIndices[0]];
+	}
+
+	public double weightOf(String term) {
+		char[] key = term.toCharArray();
+		for (int i = 0; i < myWords.length; i++)
+			if (myOffsets[i + 1] - myOffsets[i] == key.length
+					&& Arrays.equals(myChars, myOffsets[i], myOffsets[i + 1], key, 0, key.length))
+				return myWeights[i];
+		// term is not in dictionary return 0
+		return 0;
+	}
+
+	/**
+	 * The k heaviest terms starting with prefix, scanned in parallel if there
+	 * are enough terms to be worth splitting.
+	 */
+	private TopK scan(String prefix, int k) {
+		if (prefix == null)
+			throw new NullPointerException();
+		if (k < 0)
+			throw new IllegalArgumentException("Illegal value of k:" + k);
+		char[] key = prefix.toCharArray();
+		if (k == 0 || myWords.length <= LEAF_SIZE)
+			return scan(key, k, 0, myWords.length);
+		return myPool.invoke(new ScanTask(key, k, 0, myWords.length));
+	}
+
+	/**
+	 * Sequential scan of terms [lo, hi) into a new heap, which starts no
+	 * bigger than the slice so a huge k does not allocate k slots per leaf.
+	 */
+	private TopK scan(char[] key, int k, int lo, int hi) {
+		TopK top = new TopK(k, hi - lo);
+		if (key.length == 0) {
+			for (int i = lo; i < hi; i++)
+				top.offer(i);
+			return top;
+		}
+		// most terms differ in the first character, so test it before
+		// paying for the range compare
+		char first = key[0];
+		for (int i = lo; i < hi; i++) {
+			int start = myOffsets[i];
+			if (myOffsets[i + 1] - start >= key.length && myChars[start] == first
+					&& Arrays.equals(myChars, start, start + key.length, key, 0, key.length))
+				top.offer(i);
+		}
+		return top;
+	}
+
+	/**
+	 * Scans a slice of the terms, halving it until it is at most LEAF_SIZE
+	 * terms, and merges the halves' heaps.
+	 */
+	private class ScanTask extends RecursiveTask<TopK> {
+		private static final long serialVersionUID = 1L;
+		private final char[] myKey;
+		private final int myK;
+		private final int myLo;
+		private final int myHi;
+
+		ScanTask(char[] key, int k, int lo, int hi) {
+			myKey = key;
+			myK = k;
+			myLo = lo;
+			myHi = hi;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (myHi - myLo <= LEAF_SIZE)
+				return scan(myKey, myK, myLo, myHi);
+			int mid = (myLo + myHi) >>> 1;
+			ScanTask left = new ScanTask(myKey, myK, myLo, mid);
+			left.fork();
+			TopK right = new ScanTask(myKey, myK, mid, myHi).compute();
+			TopK top = left.join();
+			top.merge(right);
+			return top;
+		}
+	}
+
+	/**
+	 * A min-heap of at most capacity term indices, lightest on top, so the
+	 * heap always holds the heaviest terms offered. Of equal weights the
+	 * lower index is kept, which makes results independent of how the scan
+	 * was split. The array starts at the expected number of terms and grows
+	 * as needed up to capacity.
+	 */
+	private class TopK {
+		int[] myIndices;
+		int mySize;
+		private final int myCapacity;
+
+		TopK(int capacity, int expected) {
+			myCapacity = capacity;
+			myIndices = new int[Math.min(capacity, expected)];
+		}
+
+		/**
+		 * True if term a should be evicted before term b.
+		 */
+		private boolean lighter(int a, int b) {
+			if (myWeights[a] != myWeights[b])
+				return myWeights[a] < myWeights[b];
+			return a > b;
+		}
+
+		void offer(int index) {
+			if (mySize < myCapacity) {
+				if (mySize == myIndices.length)
+					myIndices = Arrays.copyOf(myIndices, (int) Math.min(myCapacity, Math.max(1, 2L * mySize)));
+				myIndices[mySize] = index;
+				siftUp(mySize++);
+			} else if (mySize > 0 && lighter(myIndices[0], index)) {
+				myIndices[0] = index;
+				siftDown(0);
+			}
+		}
+
+		void merge(TopK other) {
+			if (mySize + other.mySize > myIndices.length)
+				myIndices = Arrays.copyOf(myIndices, (int) Math.min(myCapacity, (long) mySize + other.mySize));
+			for (int i = 0; i < other.mySize; i++)
+				offer(other.myIndices[i]);
+		}
+
+		private void siftUp(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!lighter(myIndices[i], myIndices[parent]))
+					return;
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= mySize)
+					return;
+				if (child + 1 < mySize && lighter(myIndices[child + 1], myIndices[child]))
+					child++;
+				if (!lighter(myIndices[child], myIndices[i]))
+					return;
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		private void swap(int i, int j) {
+			int t = myIndices[i];
+			myIndices[i] = myIndices[j];
+			myIndices[j] = t;
+		}
+
+		/**
+		 * Empties the heap and returns its indices heaviest first.
+		 */
+		int[] descending() {
+			int[] result = new int[mySize];
+			for (int i = result.length - 1; i >= 0; i--) {
+				result[i] = myIndices[0];
+				myIndices[0] = myIndices[--mySize];
+				siftDown(0);
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,439 @@
+import java.util.*;
+
+/**
+ * Path-compressed trie implementation of Autocompletor. Unlike
+ * TrieAutocomplete, which creates one Node per character, every chain of
+ * single-child, non-word nodes is collapsed into one edge whose label holds
+ * the whole run of characters. A prefix may therefore end part of the way
+ * along an edge, in which case every word below that edge matches.
+ *
+ * The trie is only written during construction, so a constructed instance
+ * can be queried from many threads at once.
+ */
+public class RadixTrieAutocomplete implements Autocompletor {
+
+	/**
+	 * Root of entire trie, reached by the empty label
+	 */
+	protected final RadixNode myRoot;
+
+	/**
+	 * Constructor method for RadixTrieAutocomplete. Initializes the trie
+	 * rooted at myRoot and adds every word in terms.
+	 *
+	 * @param terms
+	 *            - The words we will autocomplete from
+	 * @param weights
+	 *            - Their weights, such that terms[i] has weight weights[i].
+	 * @throws NullPointerException
+	 *             if either argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths or a term is
+	 *             duplicated
+	 */
+	public RadixTrieAutocomplete(String[] terms, double[] weights) {
+		if (terms == null || weights == null)
+			throw new NullPointerException("One or more arguments null");
+		if (terms.length != weights.length)
+			throw new IllegalArgumentException("Terms and weights are not the same length");
+		HashSet<String> words = new HashSet<String>();
+		myRoot = new RadixNode("", 0);
+		for (int i = 0; i < terms.length; i++) {
+			if (!words.add(terms[i]))
+				throw new IllegalArgumentException("Duplicate term " + terms[i]);
+			add(terms[i], weights[i]);
+		}
+	}
+
+	/**
+	 * Add the word with given weight, splitting an edge when the word leaves
+	 * it part of the way along its label. Updates mySubtreeMaxWeight of every
+	 * node on the path.
+	 */
+	private void add(String word, double weight) {
+		RadixNode current = myRoot;
+		int pos = 0;
+		while (true) {
+			if (current.mySubtreeMaxWeight < weight)
+				current.mySubtreeMaxWeight = weight;
+			if (pos == word.length()) {
+				current.isWord = true;
+				current.myWord = word;
+				current.myWeight = weight;
+				return;
+			}
+			int index = current.indexOfChild(word.charAt(pos));
+			if (index < 0) {
+				// nothing shares this character, so the rest of word is one edge
+				RadixNode leaf = new RadixNode(word.substring(pos), weight);
+				leaf.isWord = true;
+				leaf.myWord = word;
+				leaf.myWeight = weight;
+				current.addChild(-index - 1, leaf);
+				return;
+			}
+			RadixNode child = current.childNodes[index];
+			int common = commonLength(child.myLabel, word, pos);
+			if (common < child.myLabel.length()) {
+				// word leaves the edge part way along: split it at that point
+				RadixNode middle = new RadixNode(child.myLabel.substring(0, common), child.mySubtreeMaxWeight);
+				child.myLabel = child.myLabel.substring(common);
+				middle.addChild(0, child);
+				current.childNodes[index] = middle;
+				child = middle;
+			}
+			current = child;
+			pos += common;
+		}
+	}
+
+	/**
+	 * Number of leading characters label shares with word starting at pos.
+	 */
+	private static int commonLength(String label, String word, int pos) {
+		int limit = Math.min(label.length(), word.length() - pos);
+		int i = 0;
+		while (i < limit && label.charAt(i) == word.charAt(pos + i))
+			i++;
+		return i;
+	}
+
+	/**
+	 * Returns the highest node whose path spells a string starting with
+	 * prefix, or null if no word starts with prefix. If prefix ends part of
+	 * the way along an edge, the node below that edge is returned.
+	 */
+	private RadixNode locate(String prefix) {
+		RadixNode current = myRoot;
+		int pos = 0;
+		while (pos < prefix.length()) {
+			int index = current.indexOfChild(prefix.charAt(pos));
+			if (index < 0)
+				return null;
+			current = current.childNodes[index];
+			int common = commonLength(current.myLabel, prefix, pos);
+			if (common < current.myLabel.length() && pos + common < prefix.length())
+				return null;
+			pos += current.myLabel.length();
+		}
+		return current;
+	}
+
+	/**
+	 * Required by the Autocompletor interface. Returns the k words with the
+	 * largest weight which start with prefix, in descending weight order, or
+	 * all such words if there are fewer than k.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterable<String> topMatches(String prefix, int k) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatches(locate(prefix), k);
+	}
+
+	private ArrayList<String> topMatches(RadixNode current, int k) {
+		ArrayList<String> arr = new ArrayList<String>();
+		if (k <= 0 || current == null) return arr;
+		WordIterator words = new WordIterator(current);
+		while (arr.size() < k && words.hasNext())
+			arr.add(words.next().myWord);
+		return arr;
+	}
+
+	/**
+	 * Fills buffer with the k heaviest words starting with prefix and their
+	 * weights, from the same search as topMatches, and returns it.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatchesWithWeights(locate(prefix), k, buffer);
+	}
+
+	private static WeightedMatches topMatchesWithWeights(RadixNode current, int k, WeightedMatches buffer) {
+		buffer.clear();
+		if (k <= 0 || current == null) return buffer;
+		WordIterator words = new WordIterator(current);
+		while (buffer.size() < k && words.hasNext()) {
+			RadixNode word = words.next();
+			buffer.add(word.myWord, word.myWeight);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns every word starting with prefix in descending weight order,
+	 * found lazily by the search topMatches uses.
+	 *
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		RadixNode start = locate(prefix);
+		if (start == null) return Collections.<String>emptyIterator();
+		final WordIterator words = new WordIterator(start);
+		return new Iterator<String>() {
+			public boolean hasNext() {
+				return words.hasNext();
+			}
+
+			public String next() {
+				return words.next().myWord;
+			}
+		};
+	}
+
+	/**
+	 * Yields the word nodes below start in descending weight order. Nodes are
+	 * explored best-first by mySubtreeMaxWeight, and a word is only emitted
+	 * once no unexplored subtree could hold a heavier word.
+	 */
+	private static class WordIterator implements Iterator<RadixNode> {
+		private final PriorityQueue<RadixNode> mySubtrees = new PriorityQueue<RadixNode>(
+				new ReverseSubtreeMaxWeightComparator());
+		private final PriorityQueue<RadixNode> myWords = new PriorityQueue<RadixNode>(new ReverseWeightComparator());
+
+		WordIterator(RadixNode start) {
+			mySubtrees.add(start);
+		}
+
+		public boolean hasNext() {
+			while (true) {
+				if (!myWords.isEmpty()
+						&& (mySubtrees.isEmpty() || myWords.peek().myWeight >= mySubtrees.peek().mySubtreeMaxWeight))
+					return true;
+				if (mySubtrees.isEmpty())
+					return false;
+				RadixNode current = mySubtrees.remove();
+				if (current.isWord)
+					myWords.add(current);
+				for (int i = 0; i < current.childCount; i++)
+					mySubtrees.add(current.childNodes[i]);
+			}
+		}
+
+		public RadixNode next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return myWords.remove();
+		}
+	}
+
+	/**
+	 * Given a prefix, returns the largest-weight word in the trie starting with
+	 * that prefix, or an empty string if none exists.
+	 *
+	 * @throws NullPointerException
+	 *             if the prefix is null
+	 */
+	public String topMatch(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatch(locate(prefix));
+	}
+
+	private static String topMatch(RadixNode current) {
+		if (current == null) return "";
+		while (true) {
+			RadixNode best = null;
+			for (int i = 0; i < current.childCount; i++) {
+				RadixNode child = current.childNodes[i];
+				if (best == null || child.mySubtreeMaxWeight > best.mySubtreeMaxWeight)
+					best = child;
+			}
+			if (current.isWord && (best == null || current.myWeight >= best.mySubtreeMaxWeight))
+				return current.myWord;
+			if (best == null)
+				return "";
+			current = best;
+		}
+	}
+
+	/**
+	 * Returns a session that keeps the position reached by each prefix of its
+	 * text on a stack, so typing a character is one character comparison or
+	 * child lookup and backspace is a pop.
+	 */
+	public AutocompleteSession newSession() {
+		return new RadixSession();
+	}
+
+	/**
+	 * Entry i of the stack is the position reached by the first i characters
+	 * of the text: myNodes[i] is the node whose edge the text ends on and
+	 * myMatched[i] how many characters of that edge's label it has matched.
+	 * Once the text leaves the trie, further characters are only counted in
+	 * myMissing.
+	 */
+	private class RadixSession extends AutocompleteSession {
+		private RadixNode[] myNodes = new RadixNode[16];
+		private int[] myMatched = new int[16];
+		private int mySize = 1;
+		private int myMissing;
+
+		RadixSession() {
+			myNodes[0] = myRoot;
+		}
+
+		private RadixNode current() {
+			return myMissing > 0 ? null : myNodes[mySize - 1];
+		}
+
+		protected void pushed(char ch) {
+			if (myMissing > 0) {
+				myMissing++;
+				return;
+			}
+			RadixNode node = myNodes[mySize - 1];
+			int matched = myMatched[mySize - 1];
+			if (matched < node.myLabel.length()) {
+				if (node.myLabel.charAt(matched) != ch) {
+					myMissing++;
+					return;
+				}
+				push(node, matched + 1);
+				return;
+			}
+			int index = node.indexOfChild(ch);
+			if (index < 0)
+				myMissing++;
+			else
+				push(node.childNodes[index], 1);
+		}
+
+		private void push(RadixNode node, int matched) {
+			if (mySize == myNodes.length) {
+				myNodes = Arrays.copyOf(myNodes, 2 * mySize);
+				myMatched = Arrays.copyOf(myMatched, 2 * mySize);
+			}
+			myNodes[mySize] = node;
+			myMatched[mySize] = matched;
+			mySize++;
+		}
+
+		protected void popped() {
+			if (myMissing > 0)
+				myMissing--;
+			else
+				myNodes[--mySize] = null;
+		}
+
+		public Iterable<String> topMatches(int k) {
+			return RadixTrieAutocomplete.this.topMatches(current(), k);
+		}
+
+		public String topMatch() {
+			return RadixTrieAutocomplete.topMatch(current());
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			return RadixTrieAutocomplete.topMatchesWithWeights(current(), k, buffer);
+		}
+	}
+
+	/**
+	 * Return the weight of a given term. If term is not in the dictionary,
+	 * return 0.0
+	 */
+	public double weightOf(String term) {
+		RadixNode current = myRoot;
+		int pos = 0;
+		while (pos < term.length()) {
+			int index = current.indexOfChild(term.charAt(pos));
+			if (index < 0)
+				return 0.0;
+			current = current.childNodes[index];
+			if (commonLength(current.myLabel, term, pos) < current.myLabel.length())
+				return 0.0;
+			pos += current.myLabel.length();
+		}
+		return current.isWord ? current.myWeight : 0.0;
+	}
+
+	/**
+	 * Node in a path-compressed trie. The label is the run of characters on
+	 * the edge from the parent, and children are keyed by the first character
+	 * of their label in sorted parallel arrays, as in Node.
+	 */
+	static class RadixNode {
+		String myLabel;
+		boolean isWord;
+		String myWord;
+		double myWeight = -1;
+		double mySubtreeMaxWeight;
+
+		char[] childKeys = NO_KEYS;
+		RadixNode[] childNodes = NO_NODES;
+		int childCount;
+
+		private static final char[] NO_KEYS = new char[0];
+		private static final RadixNode[] NO_NODES = new RadixNode[0];
+
+		RadixNode(String label, double subtreeMaximumWeight) {
+			myLabel = label;
+			mySubtreeMaxWeight = subtreeMaximumWeight;
+		}
+
+		/**
+		 * Returns the position of the child whose label starts with ch, or
+		 * (-(insertion point) - 1) if there is none.
+		 */
+		int indexOfChild(char ch) {
+			if (childCount <= Node.LINEAR_SCAN_LIMIT) {
+				for (int i = 0; i < childCount; i++) {
+					if (childKeys[i] == ch)
+						return i;
+					if (childKeys[i] > ch)
+						return -i - 1;
+				}
+				return -childCount - 1;
+			}
+			return Arrays.binarySearch(childKeys, 0, childCount, ch);
+		}
+
+		/**
+		 * Inserts child at position index, which must be its sorted position.
+		 */
+		void addChild(int index, RadixNode child) {
+			if (childCount == childKeys.length) {
+				int capacity = childCount == 0 ? 1 : childCount * 2;
+				childKeys = Arrays.copyOf(childKeys, capacity);
+				childNodes = Arrays.copyOf(childNodes, capacity);
+			}
+			System.arraycopy(childKeys, index, childKeys, index + 1, childCount - index);
+			System.arraycopy(childNodes, index, childNodes, index + 1, childCount - index);
+			childKeys[index] = child.myLabel.charAt(0);
+			childNodes[index] = child;
+			childCount++;
+		}
+
+		@Override
+		public String toString() {
+			return myLabel + " (" + myWeight + ")";
+		}
+	}
+
+	/*
+	 * In reverse subtreeMaxWeight order to make the PriorityQueue (a min-heap)
+	 * act as a max heap.
+	 */
+	static class ReverseSubtreeMaxWeightComparator implements Comparator<RadixNode> {
+		@Override
+		public int compare(RadixNode o1, RadixNode o2) {
+			return Double.compare(o2.mySubtreeMaxWeight, o1.mySubtreeMaxWeight);
+		}
+	}
+
+	/*
+	 * In reverse myWeight order, for the queue of words waiting to be emitted.
+	 */
+	static class ReverseWeightComparator implements Comparator<RadixNode> {
+		@Override
+		public int compare(RadixNode o1, RadixNode o2) {
+			return Double.compare(o2.myWeight, o1.myWeight);
+		}
+	}
+}
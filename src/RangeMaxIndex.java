@@ -0,0 +1,261 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Answers "which index in [lo, hi] has the largest weight" over an array of
+ * weights in constant time. Ties go to the lower index, so for terms sorted
+ * lexicographically the lexicographically first of equally weighted terms
+ * wins.
+ *
+ * The weights are split into blocks of 16. Each index knows the best from
+ * the start of its block up to itself and from itself to the end of its
+ * block, and a sparse table over the blocks' best indices answers any run
+ * of whole blocks with two lookups. A range that spans blocks is then the
+ * best of three lookups, and one inside a single block is a scan of at most
+ * 16 weights. This takes 2n + (n / 16) log(n / 16) ints, about 3n for a
+ * million weights, against 2n for a segment tree and n log n for a plain
+ * sparse table.
+ *
+ * Extracting the k heaviest indices of a range uses a heap of subranges:
+ * each popped subrange reports its maximum and is split around it, so the
+ * cost is O(k log k) no matter how wide the range is, and the indices can be
+ * produced lazily one at a time.
+ */
+public class RangeMaxIndex {
+
+	private static final int BLOCK_SHIFT = 4;
+	private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+	private final double[] myWeights;
+	private final int mySize;
+	private final int myBlocks;
+
+	/**
+	 * One array, so a snapshot can store it as it is: [0, n) holds for each
+	 * index the best from the start of its block through it, [n, 2n) the
+	 * best from it through the end of its block, and row j of the sparse
+	 * table follows at 2n + j * blocks, its entry b being the best index in
+	 * blocks [b, b + 2^j).
+	 */
+	private final int[] myTable;
+
+	/**
+	 * Builds the index over weights in O(n). The array is shared, not copied,
+	 * and must not be modified afterwards.
+	 */
+	public RangeMaxIndex(double[] weights) {
+		if (weights == null) throw new NullPointerException();
+		myWeights = weights;
+		mySize = weights.length;
+		myBlocks = blocks(mySize);
+		myTable = new int[tableLength(mySize)];
+		int n = mySize;
+		for (int start = 0; start < n; start += BLOCK) {
+			int end = Math.min(n, start + BLOCK) - 1;
+			myTable[start] = start;
+			for (int i = start + 1; i <= end; i++)
+				myTable[i] = better(myTable[i - 1], i);
+			myTable[n + end] = end;
+			for (int i = end - 1; i >= start; i--)
+				myTable[n + i] = better(i, myTable[n + i + 1]);
+			myTable[2 * n + (start >> BLOCK_SHIFT)] = myTable[end];
+		}
+		for (int j = 1; (1 << j) <= myBlocks; j++) {
+			int row = 2 * n + j * myBlocks;
+			int previous = row - myBlocks;
+			for (int b = 0; b + (1 << j) <= myBlocks; b++)
+				myTable[row + b] = better(myTable[previous + b], myTable[previous + b + (1 << (j - 1))]);
+		}
+	}
+
+	/**
+	 * Wraps a table previously built over weights, as read back from a
+	 * snapshot, without rebuilding it.
+	 */
+	RangeMaxIndex(double[] weights, int[] table) {
+		if (table.length != tableLength(weights.length))
+			throw new IllegalArgumentException("Table does not match weights");
+		myWeights = weights;
+		mySize = weights.length;
+		myBlocks = blocks(mySize);
+		myTable = table;
+	}
+
+	private static int blocks(int n) {
+		return (n + BLOCK - 1) >> BLOCK_SHIFT;
+	}
+
+	/**
+	 * Number of ints in the table for n weights.
+	 */
+	static int tableLength(int n) {
+		int blocks = blocks(n);
+		int rows = 32 - Integer.numberOfLeadingZeros(blocks);
+		return 2 * n + rows * blocks;
+	}
+
+	/**
+	 * The table array, for saving in a snapshot. Must not be modified.
+	 */
+	int[] table() {
+		return myTable;
+	}
+
+	/**
+	 * Returns whichever of indices a and b has the larger weight, preferring
+	 * the lower index on ties. A negative index stands for "none".
+	 */
+	private int better(int a, int b) {
+		if (a < 0) return b;
+		if (b < 0) return a;
+		if (myWeights[a] > myWeights[b]) return a;
+		if (myWeights[b] > myWeights[a]) return b;
+		return Math.min(a, b);
+	}
+
+	/**
+	 * Returns the index of the largest weight in [lo, hi], inclusive.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is empty or not within the weights
+	 */
+	public int maxIndex(int lo, int hi) {
+		if (lo < 0 || hi >= mySize || lo > hi)
+			throw new IndexOutOfBoundsException("Bad range [" + lo + ", " + hi + "]");
+		int first = lo >> BLOCK_SHIFT;
+		int last = hi >> BLOCK_SHIFT;
+		if (first == last) {
+			if ((lo & (BLOCK - 1)) == 0)
+				return myTable[hi];
+			if ((hi & (BLOCK - 1)) == BLOCK - 1 || hi == mySize - 1)
+				return myTable[mySize + lo];
+			int best = lo;
+			for (int i = lo + 1; i <= hi; i++)
+				best = better(best, i);
+			return best;
+		}
+		int best = better(myTable[mySize + lo], myTable[hi]);
+		if (last - first > 1) {
+			int a = first + 1;
+			int count = last - a;
+			int j = 31 - Integer.numberOfLeadingZeros(count);
+			int row = 2 * mySize + j * myBlocks;
+			best = better(best, better(myTable[row + a], myTable[row + last - (1 << j)]));
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the indices of the (at most) k largest weights in [lo, hi] in
+	 * descending weight order.
+	 */
+	public int[] topIndices(int lo, int hi, int k) {
+		int size = Math.min(k, hi - lo + 1);
+		if (size <= 0)
+			return new int[0];
+		int[] result = new int[size];
+		PrimitiveIterator.OfInt indices = descending(lo, hi);
+		for (int i = 0; i < size; i++)
+			result[i] = indices.nextInt();
+		return result;
+	}
+
+	/**
+	 * Returns every index in [lo, hi] in descending weight order, computed
+	 * lazily: the first index costs one maxIndex query and each later one
+	 * two more and O(log k) heap work, k being the number taken so far. An
+	 * empty range (lo > hi) yields nothing.
+	 */
+	public PrimitiveIterator.OfInt descending(int lo, int hi) {
+		return new Descending(lo, hi);
+	}
+
+	/**
+	 * A heap of non-empty subranges, each stored with the index of its
+	 * largest weight, heaviest on top. The subranges live in parallel int
+	 * arrays, so popping one and pushing its halves allocates nothing.
+	 */
+	private class Descending implements PrimitiveIterator.OfInt {
+		private int[] myLo = new int[8];
+		private int[] myHi = new int[8];
+		private int[] myBest = new int[8];
+		private int myCount;
+
+		Descending(int lo, int hi) {
+			if (lo <= hi)
+				push(lo, hi);
+		}
+
+		public boolean hasNext() {
+			return myCount > 0;
+		}
+
+		public int nextInt() {
+			if (myCount == 0)
+				throw new NoSuchElementException();
+			int lo = myLo[0];
+			int hi = myHi[0];
+			int best = myBest[0];
+			myCount--;
+			if (myCount > 0) {
+				move(myCount, 0);
+				siftDown(0);
+			}
+			if (lo < best)
+				push(lo, best - 1);
+			if (best < hi)
+				push(best + 1, hi);
+			return best;
+		}
+
+		private void push(int lo, int hi) {
+			if (myCount == myBest.length) {
+				myLo = Arrays.copyOf(myLo, 2 * myCount);
+				myHi = Arrays.copyOf(myHi, 2 * myCount);
+				myBest = Arrays.copyOf(myBest, 2 * myCount);
+			}
+			int i = myCount++;
+			myLo[i] = lo;
+			myHi[i] = hi;
+			myBest[i] = maxIndex(lo, hi);
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (better(myBest[i], myBest[parent]) != myBest[i])
+					return;
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= myCount)
+					return;
+				if (child + 1 < myCount && better(myBest[child + 1], myBest[child]) == myBest[child + 1])
+					child++;
+				if (better(myBest[child], myBest[i]) != myBest[child])
+					return;
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		private void move(int from, int to) {
+			myLo[to] = myLo[from];
+			myHi[to] = myHi[from];
+			myBest[to] = myBest[from];
+		}
+
+		private void swap(int i, int j) {
+			int lo = myLo[i];
+			int hi = myHi[i];
+			int best = myBest[i];
+			move(j, i);
+			myLo[j] = lo;
+			myHi[j] = hi;
+			myBest[j] = best;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * A fixed sequence of bits answering rank (how many ones come before a
+ * position) in O(1) and select (where the j-th one or zero is) in O(log n)
+ * over a small range, for succinct structures like LoudsTrieAutocomplete.
+ *
+ * The bits are split into blocks of 512, and the number of ones before each
+ * block is kept in an int, so rank adds at most eight word popcounts to one
+ * lookup. Select finds its block by binary search between samples taken at
+ * every 512th one and every 512th zero, then counts through the block. The
+ * directory adds about 6% to the bits for rank and a little more for select.
+ */
+public class RankSelectBitVector {
+
+	private static final int WORDS_PER_BLOCK = 8;
+	private static final int BLOCK_BITS = 64 * WORDS_PER_BLOCK;
+	private static final int SAMPLE = 512;
+
+	private final long[] myBits;
+	private final int myLength;
+
+	/**
+	 * myBlockRanks[b] is the number of ones before block b, for every block
+	 * and one past the last.
+	 */
+	private final int[] myBlockRanks;
+
+	/**
+	 * Entry i is the block holding the (i * SAMPLE)-th one, or zero.
+	 */
+	private final int[] myOneSamples;
+	private final int[] myZeroSamples;
+
+	/**
+	 * Builds the directory over the first length bits of bits, where bit i is
+	 * (bits[i / 64] >>> (i % 64)) & 1. The array is shared, not copied, and
+	 * must not be modified afterwards; bits past length must be zero.
+	 */
+	public RankSelectBitVector(long[] bits, int length) {
+		if (bits == null) throw new NullPointerException();
+		if (length < 0 || (length + 63L) / 64 > bits.length)
+			throw new IllegalArgumentException("Length does not fit the bits");
+		myBits = bits;
+		myLength = length;
+		int blocks = (length + BLOCK_BITS - 1) / BLOCK_BITS;
+		myBlockRanks = new int[blocks + 1];
+		int ones = 0;
+		for (int b = 0; b < blocks; b++) {
+			myBlockRanks[b] = ones;
+			int end = Math.min(bits.length, (b + 1) * WORDS_PER_BLOCK);
+			for (int w = b * WORDS_PER_BLOCK; w < end; w++)
+				ones += Long.bitCount(bits[w]);
+		}
+		myBlockRanks[blocks] = ones;
+		myOneSamples = new int[ones / SAMPLE + 1];
+		myZeroSamples = new int[(length - ones) / SAMPLE + 1];
+		int nextOne = 0;
+		int nextZero = 0;
+		for (int b = 0; b < blocks; b++) {
+			int onesAfter = myBlockRanks[b + 1];
+			int zerosAfter = Math.min(length, (b + 1) * BLOCK_BITS) - onesAfter;
+			while (nextOne < myOneSamples.length && nextOne * SAMPLE < onesAfter)
+				myOneSamples[nextOne++] = b;
+			while (nextZero < myZeroSamples.length && nextZero * SAMPLE < zerosAfter)
+				myZeroSamples[nextZero++] = b;
+		}
+	}
+
+	/**
+	 * Number of bits.
+	 */
+	public int length() {
+		return myLength;
+	}
+
+	/**
+	 * Whether bit i is a one.
+	 */
+	public boolean get(int i) {
+		return (myBits[i >>> 6] >>> i & 1) != 0;
+	}
+
+	/**
+	 * Number of ones in the first i bits, so rank1(i) for a one at i is the
+	 * number of ones that precede it.
+	 */
+	public int rank1(int i) {
+		int word = i >>> 6;
+		int rank = myBlockRanks[i / BLOCK_BITS];
+		for (int w = word & -WORDS_PER_BLOCK; w < word; w++)
+			rank += Long.bitCount(myBits[w]);
+		if ((i & 63) != 0)
+			rank += Long.bitCount(myBits[word] & (-1L >>> (64 - (i & 63))));
+		return rank;
+	}
+
+	/**
+	 * Number of zeros in the first i bits.
+	 */
+	public int rank0(int i) {
+		return i - rank1(i);
+	}
+
+	/**
+	 * Position of the one preceded by j others, counting from zero.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if there are not that many ones
+	 */
+	public int select1(int j) {
+		if (j < 0 || j >= myBlockRanks[myBlockRanks.length - 1])
+			throw new IndexOutOfBoundsException("No one numbered " + j);
+		int lo = myOneSamples[j / SAMPLE];
+		int hi = j / SAMPLE + 1 < myOneSamples.length ? myOneSamples[j / SAMPLE + 1] : myBlockRanks.length - 2;
+		// last block in [lo, hi] with fewer than j + 1 ones before it
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (myBlockRanks[mid] <= j)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		int remaining = j - myBlockRanks[lo];
+		for (int w = lo * WORDS_PER_BLOCK;; w++) {
+			int count = Long.bitCount(myBits[w]);
+			if (remaining < count)
+				return (w << 6) + selectInWord(myBits[w], remaining);
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Position of the zero preceded by j others, counting from zero.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if there are not that many zeros
+	 */
+	public int select0(int j) {
+		if (j < 0 || j >= myLength - myBlockRanks[myBlockRanks.length - 1])
+			throw new IndexOutOfBoundsException("No zero numbered " + j);
+		int lo = myZeroSamples[j / SAMPLE];
+		int hi = j / SAMPLE + 1 < myZeroSamples.length ? myZeroSamples[j / SAMPLE + 1] : myBlockRanks.length - 2;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (mid * BLOCK_BITS - myBlockRanks[mid] <= j)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		int remaining = j - (lo * BLOCK_BITS - myBlockRanks[lo]);
+		for (int w = lo * WORDS_PER_BLOCK;; w++) {
+			// bits past the end read as zeros here, but j is in range, so the
+			// answer comes before them
+			long zeros = ~myBits[w];
+			int count = Long.bitCount(zeros);
+			if (remaining < count)
+				return (w << 6) + selectInWord(zeros, remaining);
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Position of the first zero at or after i, or length() if there is none.
+	 */
+	public int nextZero(int i) {
+		if (i >= myLength)
+			return myLength;
+		int w = i >>> 6;
+		long zeros = ~myBits[w] & (-1L << i);
+		while (zeros == 0) {
+			if (++w == myBits.length)
+				return myLength;
+			zeros = ~myBits[w];
+		}
+		return Math.min(myLength, (w << 6) + Long.numberOfTrailingZeros(zeros));
+	}
+
+	/**
+	 * Position within word of the one preceded by j others.
+	 */
+	private static int selectInWord(long word, int j) {
+		for (; j > 0; j--)
+			word &= word - 1;
+		return Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Bytes taken by the bits and the directory, not counting object headers.
+	 */
+	public long sizeInBytes() {
+		return 8L * myBits.length + 4L * (myBlockRanks.length + myOneSamples.length + myZeroSamples.length);
+	}
+}
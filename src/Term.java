@@ -66,11 +66,43 @@ public class Term implements Comparable<Term> {
 		 *            - Two Terms whose words are being compared
 		 */
 		public int compare(Term v, Term w) {
-			// base case: if word is shorter than length r, just compare the words
-			if (v.myWord.length() < r || w.myWord.length() < r)
-				return v.myWord.compareTo(w.myWord);
-			return (v.myWord.substring(0, r).compareTo(w.myWord.substring(0, r)));
+			// compare in place rather than through substrings, so no
+			// allocation happens per comparison
+			String a = v.myWord;
+			String b = w.myWord;
+			int limit = Math.min(r, Math.min(a.length(), b.length()));
+			for (int i = 0; i < limit; i++) {
+				char ca = a.charAt(i);
+				char cb = b.charAt(i);
+				if (ca != cb)
+					return ca - cb;
+			}
+			// base case: if word is shorter than length r, just compare the
+			// words, which now comes down to their lengths
+			if (a.length() < r || b.length() < r)
+				return a.length() - b.length();
+			return 0;
+		}
+	}
+
+	/**
+	 * Compares word with prefix using only the first prefix.length()
+	 * characters of word, exactly as new PrefixOrder(prefix.length()) compares
+	 * the Terms for word and prefix, but without needing a Term for prefix.
+	 * Allocates nothing.
+	 * 
+	 * @return a negative number, zero or a positive number as word sorts
+	 *         before, starts with, or sorts after prefix
+	 */
+	public static int comparePrefix(String word, String prefix) {
+		int limit = Math.min(word.length(), prefix.length());
+		for (int i = 0; i < limit; i++) {
+			char cw = word.charAt(i);
+			char cp = prefix.charAt(i);
+			if (cw != cp)
+				return cw - cp;
 		}
+		return word.length() < prefix.length() ? -1 : 0;
 	}
 
 	/**
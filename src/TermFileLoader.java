@@ -0,0 +1,349 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file of weighted terms: a first line holding the number of terms N,
+ * then N lines of the form "weight\tterm". Weights may be preceded by
+ * whitespace and a term may be empty, as in data/empty-string.txt.
+ *
+ * The file is memory-mapped and scanned as bytes. Weights are parsed without
+ * building intermediate Strings, and each term is decoded straight from the
+ * mapped bytes into the terms array, so loading costs one String per term.
+ * Large files can be split into newline-aligned chunks parsed in parallel.
+ */
+public class TermFileLoader {
+
+	private final String[] myTerms;
+	private final double[] myWeights;
+
+	/**
+	 * Powers of ten that a double holds exactly
+	 */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	/**
+	 * Largest mantissa that converts to a double exactly
+	 */
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * Chunks smaller than this are not worth a task of their own.
+	 */
+	private static final int CHUNK_BYTES = 1 << 16;
+
+	private TermFileLoader(String[] terms, double[] weights) {
+		myTerms = terms;
+		myWeights = weights;
+	}
+
+	/**
+	 * Loads every term and weight in file.
+	 *
+	 * @throws IOException
+	 *             if file cannot be read or is malformatted
+	 */
+	public static TermFileLoader load(File file) throws IOException {
+		MappedByteBuffer buffer = map(file);
+		int limit = buffer.limit();
+		int pos = endOfLine(buffer, 0, limit);
+		int count = parseCount(buffer, 0, pos);
+		String[] terms = new String[count];
+		double[] weights = new double[count];
+		int end = new Parser(buffer).parse(Math.min(pos + 1, limit), limit, terms, weights, 0, count);
+		if (end < 0)
+			throw new IOException("Expected " + count + " terms in " + file);
+		return new TermFileLoader(terms, weights);
+	}
+
+	/**
+	 * Loads every term and weight in file using up to threads threads. The
+	 * body is cut into newline-aligned chunks; a first parallel pass counts
+	 * the lines in each chunk so that each knows the index of its first
+	 * term, and a second parses the chunks straight into their slices of the
+	 * arrays. Lines beyond the declared count are ignored, as in load(File).
+	 *
+	 * @throws IOException
+	 *             if file cannot be read or is malformatted
+	 * @throws IllegalArgumentException
+	 *             if threads is not positive
+	 */
+	public static TermFileLoader load(File file, int threads) throws IOException {
+		if (threads <= 0)
+			throw new IllegalArgumentException("Illegal thread count " + threads);
+		if (threads == 1)
+			return load(file);
+		final MappedByteBuffer buffer = map(file);
+		final int limit = buffer.limit();
+		int headerEnd = endOfLine(buffer, 0, limit);
+		final int count = parseCount(buffer, 0, headerEnd);
+		final String[] terms = new String[count];
+		final double[] weights = new double[count];
+
+		// chunk boundaries, each just after a newline
+		int body = Math.min(headerEnd + 1, limit);
+		int chunks = Math.max(1, Math.min(4 * threads, (limit - body) / CHUNK_BYTES));
+		final int[] starts = new int[chunks + 1];
+		starts[0] = body;
+		for (int i = 1; i < chunks; i++) {
+			int target = body + (int) ((long) (limit - body) * i / chunks);
+			starts[i] = Math.min(endOfLine(buffer, Math.max(target, starts[i - 1]), limit) + 1, limit);
+		}
+		starts[chunks] = limit;
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+			for (int i = 0; i < chunks; i++) {
+				final int start = starts[i];
+				final int end = starts[i + 1];
+				counts.add(new Callable<Integer>() {
+					public Integer call() {
+						return countLines(buffer, start, end);
+					}
+				});
+			}
+			List<Callable<Integer>> parses = new ArrayList<Callable<Integer>>();
+			int first = 0;
+			for (Future<Integer> lines : pool.invokeAll(counts)) {
+				final int offset = first;
+				final int index = parses.size();
+				final int size = Math.min(get(lines), count - offset);
+				first += size;
+				parses.add(new Callable<Integer>() {
+					public Integer call() throws IOException {
+						return new Parser(buffer).parse(starts[index], starts[index + 1], terms, weights, offset, size);
+					}
+				});
+			}
+			if (first < count)
+				throw new IOException("Expected " + count + " terms in " + file);
+			for (Future<Integer> parsed : pool.invokeAll(parses))
+				get(parsed);
+		} finally {
+			pool.shutdown();
+		}
+		return new TermFileLoader(terms, weights);
+	}
+
+	/**
+	 * Number of lines starting in [start, end), counting a last line without
+	 * a newline.
+	 */
+	static int countLines(MappedByteBuffer buffer, int start, int end) {
+		int lines = 0;
+		for (int i = start; i < end; i++)
+			if (buffer.get(i) == '\n')
+				lines++;
+		if (end > start && buffer.get(end - 1) != '\n')
+			lines++;
+		return lines;
+	}
+
+	/**
+	 * Waits for a chunk task, passing on an IOException it threw.
+	 */
+	private static int get(Future<Integer> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while loading", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the terms in file order.
+	 */
+	public String[] getTerms() {
+		return myTerms;
+	}
+
+	/**
+	 * Returns the weights, such that getTerms()[i] has weight getWeights()[i].
+	 */
+	public double[] getWeights() {
+		return myWeights;
+	}
+
+	/**
+	 * Maps all of file read-only.
+	 */
+	static MappedByteBuffer map(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("File too large to map: " + file);
+			// the mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Position of the '\n' ending the line that starts at pos, or limit if the
+	 * line is the last and has no newline.
+	 */
+	static int endOfLine(MappedByteBuffer buffer, int pos, int limit) {
+		while (pos < limit && buffer.get(pos) != '\n')
+			pos++;
+		return pos;
+	}
+
+	/**
+	 * Parses the header line in [start, end), which holds the number of terms.
+	 */
+	static int parseCount(MappedByteBuffer buffer, int start, int end) throws IOException {
+		long count = 0;
+		boolean digits = false;
+		for (int i = start; i < end; i++) {
+			byte b = buffer.get(i);
+			if (b >= '0' && b <= '9') {
+				count = count * 10 + (b - '0');
+				digits = true;
+				if (count > Integer.MAX_VALUE)
+					throw new IOException("Term count too large");
+			} else if (!isWhitespace(b)) {
+				throw new IOException("Malformatted term count");
+			}
+		}
+		if (!digits)
+			throw new IOException("Missing term count");
+		return (int) count;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	/**
+	 * Parses lines out of a mapped buffer. Keeps scratch arrays for decoding
+	 * terms, so each thread parsing a file needs its own Parser.
+	 */
+	static class Parser {
+		private final MappedByteBuffer myBuffer;
+		private char[] myChars = new char[64];
+		private byte[] myBytes = new byte[64];
+
+		Parser(MappedByteBuffer buffer) {
+			myBuffer = buffer;
+		}
+
+		/**
+		 * Parses count lines starting at pos into terms[offset...] and
+		 * weights[offset...], reading no further than limit.
+		 *
+		 * @return the position just after the last line parsed, or -1 if the
+		 *         buffer ran out first
+		 * @throws IOException
+		 *             if a line has no tab or an unreadable weight
+		 */
+		int parse(int pos, int limit, String[] terms, double[] weights, int offset, int count) throws IOException {
+			for (int i = 0; i < count; i++) {
+				if (pos >= limit)
+					return -1;
+				int tab = pos;
+				while (tab < limit && myBuffer.get(tab) != '\t' && myBuffer.get(tab) != '\n')
+					tab++;
+				if (tab == limit || myBuffer.get(tab) != '\t')
+					throw new IOException("No tab in line " + (offset + i + 2));
+				int end = endOfLine(myBuffer, tab + 1, limit);
+				weights[offset + i] = parseWeight(pos, tab, offset + i + 2);
+				// drop the '\r' of a CRLF line ending, as Scanner.nextLine does
+				int termEnd = end > tab + 1 && myBuffer.get(end - 1) == '\r' ? end - 1 : end;
+				terms[offset + i] = decode(tab + 1, termEnd);
+				pos = Math.min(end + 1, limit);
+			}
+			return pos;
+		}
+
+		/**
+		 * Parses the weight in [start, end), ignoring surrounding whitespace.
+		 * Plain decimals whose digits fit in 53 bits are computed with a single
+		 * division, which rounds correctly because both the mantissa and the
+		 * power of ten are exact doubles. Anything else goes through
+		 * Double.parseDouble.
+		 */
+		private double parseWeight(int start, int end, int line) throws IOException {
+			while (start < end && isWhitespace(myBuffer.get(start)))
+				start++;
+			while (end > start && isWhitespace(myBuffer.get(end - 1)))
+				end--;
+			long mantissa = 0;
+			int fractionDigits = -1;
+			boolean digits = false;
+			for (int i = start; i < end; i++) {
+				byte b = myBuffer.get(i);
+				if (b >= '0' && b <= '9') {
+					mantissa = mantissa * 10 + (b - '0');
+					digits = true;
+					if (fractionDigits >= 0)
+						fractionDigits++;
+					if (mantissa >= MAX_EXACT_MANTISSA)
+						return parseSlow(start, end, line);
+				} else if (b == '.' && fractionDigits < 0) {
+					fractionDigits = 0;
+				} else {
+					return parseSlow(start, end, line);
+				}
+			}
+			if (!digits)
+				throw new IOException("Missing weight in line " + line);
+			if (fractionDigits <= 0)
+				return mantissa;
+			if (fractionDigits >= POWERS_OF_TEN.length)
+				return parseSlow(start, end, line);
+			return mantissa / POWERS_OF_TEN[fractionDigits];
+		}
+
+		private double parseSlow(int start, int end, int line) throws IOException {
+			try {
+				return Double.parseDouble(decode(start, end));
+			} catch (NumberFormatException e) {
+				throw new IOException("Bad weight in line " + line);
+			}
+		}
+
+		/**
+		 * Decodes the UTF-8 bytes in [start, end). ASCII, which is most
+		 * terms, is widened straight into chars without a decoder.
+		 */
+		private String decode(int start, int end) {
+			int length = end - start;
+			if (length > myChars.length) {
+				myChars = new char[Math.max(length, 2 * myChars.length)];
+				myBytes = new byte[myChars.length];
+			}
+			for (int i = 0; i < length; i++) {
+				byte b = myBuffer.get(start + i);
+				if (b < 0)
+					return decodeUtf8(start, end);
+				myChars[i] = (char) b;
+			}
+			return new String(myChars, 0, length);
+		}
+
+		private String decodeUtf8(int start, int end) {
+			int length = end - start;
+			for (int i = 0; i < length; i++)
+				myBytes[i] = myBuffer.get(start + i);
+			return new String(myBytes, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * Sorts term indices lexicographically without boxing them, for the trie
+ * builders that need their terms in order: TrieAutocomplete,
+ * DoubleArrayTrieAutocomplete and LoudsTrieAutocomplete.
+ */
+public final class TermSort {
+
+	private TermSort() {
+	}
+
+	/**
+	 * Indices of terms in lexicographic order. Input that is already sorted,
+	 * as some term files are, is detected in one pass and not sorted again.
+	 */
+	public static int[] sortedOrder(String[] terms) {
+		int[] order = new int[terms.length];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		boolean sorted = true;
+		for (int i = 1; i < terms.length && sorted; i++)
+			sorted = terms[i - 1].compareTo(terms[i]) <= 0;
+		if (!sorted)
+			sort(terms, order, 0, order.length, 0);
+		return order;
+	}
+
+	/**
+	 * Below this many indices, sort sorts by insertion.
+	 */
+	private static final int INSERTION_SORT_LIMIT = 12;
+
+	/**
+	 * Sorts order[lo, hi), indices of terms that agree on their first depth
+	 * characters, by three-way radix quicksort: the range is split around
+	 * the character at depth of a middle term, and the terms sharing that
+	 * character continue at depth + 1. Each character is compared once per
+	 * split rather than again in every String.compareTo, and no indices are
+	 * boxed.
+	 */
+	public static void sort(String[] terms, int[] order, int lo, int hi, int depth) {
+		while (hi - lo > INSERTION_SORT_LIMIT) {
+			int pivot = charAt(terms[order[lo + (hi - lo) / 2]], depth);
+			int lt = lo;
+			int gt = hi - 1;
+			for (int i = lo; i <= gt;) {
+				int ch = charAt(terms[order[i]], depth);
+				if (ch < pivot)
+					swap(order, lt++, i++);
+				else if (ch > pivot)
+					swap(order, i, gt--);
+				else
+					i++;
+			}
+			sort(terms, order, lo, lt, depth);
+			sort(terms, order, gt + 1, hi, depth);
+			// terms that end at depth are equal and need no more sorting
+			if (pivot < 0)
+				return;
+			lo = lt;
+			hi = gt + 1;
+			depth++;
+		}
+		for (int i = lo + 1; i < hi; i++) {
+			int index = order[i];
+			int j = i;
+			for (; j > lo && less(terms[index], terms[order[j - 1]], depth); j--)
+				order[j] = order[j - 1];
+			order[j] = index;
+		}
+	}
+
+	/**
+	 * The character of term at depth, or -1 past its end.
+	 */
+	public static int charAt(String term, int depth) {
+		return depth < term.length() ? term.charAt(depth) : -1;
+	}
+
+	/**
+	 * Whether a sorts before b, given that they agree on their first depth
+	 * characters.
+	 */
+	private static boolean less(String a, String b, int depth) {
+		int limit = Math.min(a.length(), b.length());
+		for (int i = depth; i < limit; i++)
+			if (a.charAt(i) != b.charAt(i))
+				return a.charAt(i) < b.charAt(i);
+		return a.length() < b.length();
+	}
+
+	private static void swap(int[] order, int i, int j) {
+		int index = order[i];
+		order[i] = order[j];
+		order[j] = index;
+	}
+}
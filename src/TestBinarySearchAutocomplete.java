@@ -2,8 +2,11 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -193,4 +196,127 @@ public class TestBinarySearchAutocomplete {
 		assertEquals(6, BinarySearchAutocomplete.lastIndexOf(terms, new Term("ba", 0), new Term.PrefixOrder(2)));
 		assertEquals(9, BinarySearchAutocomplete.lastIndexOf(terms, new Term("b", 0), new Term.PrefixOrder(1)));
 	}
+
+	/**
+	 * Compares topMatches, topMatchesWithWeights, topMatch and matchIterator
+	 * on random dictionaries, including tied weights, against sorting every
+	 * matching term by weight.
+	 */
+	@Test(timeout = 10000)
+	public void testTopMatchesAgainstSort() {
+		Random rng = new Random(1234);
+		for (int trial = 0; trial < 20; trial++) {
+			int n = 1 + rng.nextInt(300);
+			String[] names = new String[n];
+			double[] weights = new double[n];
+			for (int i = 0; i < n; i++) {
+				names[i] = i + "";
+				weights[i] = rng.nextInt(20);
+			}
+			Autocompletor test = getInstance(names, weights);
+			Term[] sorted = new Term[n];
+			for (int i = 0; i < n; i++)
+				sorted[i] = new Term(names[i], weights[i]);
+			Arrays.sort(sorted);
+			// stable, so ties stay in lexicographic order
+			Arrays.sort(sorted, new Term.ReverseWeightOrder());
+			for (String prefix : new String[] { "", "1", "2", "10", "9" }) {
+				ArrayList<String> expected = new ArrayList<String>();
+				for (Term t : sorted)
+					if (t.getWord().startsWith(prefix))
+						expected.add(t.getWord());
+				int k = 1 + rng.nextInt(n);
+				String[] actual = iterToArr(test.topMatches(prefix, k));
+				assertArrayEquals("wrong top matches for " + prefix + " " + k,
+						expected.subList(0, Math.min(k, expected.size())).toArray(new String[0]), actual);
+				assertEquals("wrong top match for " + prefix, expected.isEmpty() ? "" : expected.get(0),
+						test.topMatch(prefix));
+				ArrayList<String> lazy = new ArrayList<String>();
+				for (Iterator<String> it = test.matchIterator(prefix); it.hasNext();)
+					lazy.add(it.next());
+				assertEquals("wrong lazy matches for " + prefix, expected, lazy);
+				WeightedMatches buffer = test.topMatchesWithWeights(prefix, k, new WeightedMatches());
+				assertEquals(actual.length, buffer.size());
+				for (int i = 0; i < actual.length; i++) {
+					assertEquals(actual[i], buffer.term(i));
+					assertEquals(test.weightOf(actual[i]), buffer.weight(i), 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks RangeMaxIndex.maxIndex on every range of random weights with
+	 * many ties, inside one block of the index and across several, against
+	 * a linear scan that keeps the first of equal weights
+	 */
+	@Test(timeout = 10000)
+	public void testRangeMaxIndex() {
+		Random rng = new Random(4);
+		for (int n : new int[] { 1, 15, 16, 17, 33, 100, 257 }) {
+			double[] weights = new double[n];
+			for (int i = 0; i < n; i++)
+				weights[i] = rng.nextInt(8);
+			RangeMaxIndex index = new RangeMaxIndex(weights);
+			for (int lo = 0; lo < n; lo++) {
+				int best = lo;
+				for (int hi = lo; hi < n; hi++) {
+					if (weights[hi] > weights[best])
+						best = hi;
+					assertEquals("wrong max of [" + lo + ", " + hi + "]", best, index.maxIndex(lo, hi));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The String entry points, over Terms or over bare words, must find the
+	 * same indices as the Comparator versions, with and without duplicates.
+	 */
+	@Test(timeout = 10000)
+	public void testIndexOfPrefixString() {
+		Term[] duplicates = new Term[] { new Term("ape", 0), new Term("apple", 0), new Term("apple", 0),
+				new Term("apple", 0), new Term("bat", 0), new Term("bat", 0), new Term("bee", 0), new Term("cat", 0) };
+		String[] prefixes = { "", "a", "ap", "ape", "apple", "apples", "ab", "b", "ba", "be", "c", "cat", "cat ", "d" };
+		for (Term[] a : new Term[][] { myTerms, duplicates, new Term[0] }) {
+			String[] words = new String[a.length];
+			for (int i = 0; i < a.length; i++)
+				words[i] = a[i].getWord();
+			for (String prefix : prefixes) {
+				Term key = new Term(prefix, 0);
+				Term.PrefixOrder order = new Term.PrefixOrder(prefix.length());
+				assertEquals("first index of " + prefix, BinarySearchAutocomplete.firstIndexOf(a, key, order),
+						BinarySearchAutocomplete.firstIndexOf(a, prefix));
+				assertEquals("last index of " + prefix, BinarySearchAutocomplete.lastIndexOf(a, key, order),
+						BinarySearchAutocomplete.lastIndexOf(a, prefix));
+				assertEquals("first word index of " + prefix, BinarySearchAutocomplete.firstIndexOf(a, prefix),
+						BinarySearchAutocomplete.firstIndexOf(words, prefix));
+				assertEquals("last word index of " + prefix, BinarySearchAutocomplete.lastIndexOf(a, prefix),
+						BinarySearchAutocomplete.lastIndexOf(words, prefix));
+			}
+		}
+	}
+
+	/**
+	 * Narrows a session one character at a time over words that are
+	 * prefixes of each other, and checks each range against a full query
+	 */
+	@Test(timeout = 10000)
+	public void testSession() {
+		String[] names = { "", "a", "ab", "abc", "abd", "b", "ba", "bab", "c" };
+		double[] weights = { 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+		Autocompletor test = getInstance(names, weights);
+		AutocompleteSession session = test.newSession();
+		Random rng = new Random(3);
+		for (int step = 0; step < 300; step++) {
+			if (rng.nextInt(3) == 0)
+				session.backspace();
+			else
+				session.append("abcd".charAt(rng.nextInt(4)));
+			String text = session.getText();
+			assertEquals("wrong top match for " + text, test.topMatch(text), session.topMatch());
+			assertArrayEquals("wrong top matches for " + text, iterToArr(test.topMatches(text, 9)),
+					iterToArr(session.topMatches(9)));
+		}
+	}
 }
@@ -0,0 +1,111 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class TestCachingAutocompletor {
+
+	private String[] myNames = { "ape", "app", "ban", "bat", "bee", "car", "cat" };
+	private double[] myWeights = { 6, 4, 2, 3, 5, 7, 1 };
+
+	private String[] iterToArr(Iterable<String> it) {
+		ArrayList<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Tests that cached answers match the underlying index and that repeated
+	 * queries are counted as hits
+	 */
+	@Test(timeout = 10000)
+	public void testHitsAndMisses() {
+		TrieAutocomplete trie = new TrieAutocomplete(myNames, myWeights);
+		CachingAutocompletor cache = new CachingAutocompletor(trie, 64, 4);
+		String[] queries = { "", "a", "b", "ba", "c", "d" };
+		for (int round = 0; round < 3; round++) {
+			for (String query : queries) {
+				for (int k = 0; k < 4; k++) {
+					assertArrayEquals(iterToArr(trie.topMatches(query, k)), iterToArr(cache.topMatches(query, k)));
+					WeightedMatches matches = cache.topMatchesWithWeights(query, k, new WeightedMatches());
+					for (int i = 0; i < matches.size(); i++)
+						assertEquals(trie.weightOf(matches.term(i)), matches.weight(i), 0);
+				}
+			}
+		}
+		assertEquals(queries.length * 4, cache.getMissCount());
+		assertEquals(queries.length * 4 * 5, cache.getHitCount());
+		assertEquals(queries.length * 4, cache.size());
+	}
+
+	/**
+	 * Tests that the cache never holds more than its capacity
+	 */
+	@Test(timeout = 10000)
+	public void testEviction() {
+		CachingAutocompletor cache = new CachingAutocompletor(new TrieAutocomplete(myNames, myWeights), 8, 2);
+		for (int k = 0; k < 100; k++)
+			cache.topMatches("a", k);
+		assertTrue(cache.size() <= cache.getCapacity());
+		// the most recent query is still cached
+		long misses = cache.getMissCount();
+		cache.topMatches("a", 99);
+		assertEquals(misses, cache.getMissCount());
+	}
+
+	/**
+	 * Tests that a capacity below the segment count works, and that a huge k
+	 * is answered in full but never cached
+	 */
+	@Test(timeout = 10000)
+	public void testSmallCapacityHugeK() {
+		CachingAutocompletor cache = new CachingAutocompletor(new TrieAutocomplete(myNames, myWeights), 3);
+		assertEquals(3, cache.getCapacity());
+		Iterable<String> all = cache.topMatches("", Integer.MAX_VALUE);
+		int count = 0;
+		for (String s : all)
+			count++;
+		assertEquals(myNames.length, count);
+		cache.topMatches("", Integer.MAX_VALUE);
+		assertEquals(0, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+		assertEquals(0, cache.size());
+		cache.topMatches("a", CachingAutocompletor.MAX_CACHED_K + 1);
+		assertEquals(0, cache.size());
+		cache.topMatches("a", CachingAutocompletor.MAX_CACHED_K);
+		assertEquals(1, cache.size());
+	}
+
+	/**
+	 * Tests that a reload of a wrapped HotSwapAutocompletor drops results from
+	 * the old dictionary
+	 */
+	@Test(timeout = 10000)
+	public void testInvalidateOnSwap() throws Exception {
+		File before = File.createTempFile("cache", ".txt");
+		File after = File.createTempFile("cache", ".txt");
+		before.deleteOnExit();
+		after.deleteOnExit();
+		write(before, "2\n5\tape\n3\tapp\n");
+		write(after, "2\n1\tape\n3\tapple\n");
+		HotSwapAutocompletor hotSwap = new HotSwapAutocompletor("TrieAutocomplete", before);
+		CachingAutocompletor cache = new CachingAutocompletor(hotSwap, 16);
+		assertArrayEquals(new String[] { "ape", "app" }, iterToArr(cache.topMatches("ap", 2)));
+		hotSwap.reload(after).get();
+		assertEquals(0, cache.size());
+		assertArrayEquals(new String[] { "apple", "ape" }, iterToArr(cache.topMatches("ap", 2)));
+		hotSwap.shutdown();
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,10 @@
+/**
+ * Runs the TrieAutocomplete tests against DoubleArrayTrieAutocomplete.
+ */
+public class TestDoubleArrayTrieAutocomplete extends TestTrieAutocomplete {
+
+	@Override
+	public Autocompletor getInstance(String[] names, double[] weights) {
+		return new DoubleArrayTrieAutocomplete(names, weights);
+	}
+}
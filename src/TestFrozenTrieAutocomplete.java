@@ -0,0 +1,52 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Runs the TrieAutocomplete tests against FrozenTrieAutocomplete, plus a test
+ * that many threads sharing one instance see the same answers as one thread.
+ */
+public class TestFrozenTrieAutocomplete extends TestTrieAutocomplete {
+
+	@Override
+	public Autocompletor getInstance(String[] names, double[] weights) {
+		return new FrozenTrieAutocomplete(names, weights);
+	}
+
+	private List<String> toList(Iterable<String> it) {
+		List<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list;
+	}
+
+	@Test(timeout = 10000)
+	public void testConcurrentQueries() throws InterruptedException {
+		final Autocompletor shared = new FrozenTrieAutocomplete(names, weights, 2, 1);
+		final String[] queries = { "", "a", "ap", "b", "ba", "be", "c", "ca", "d" };
+		final List<List<String>> expected = new ArrayList<List<String>>();
+		for (String query : queries)
+			expected.add(toList(shared.topMatches(query, 3)));
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int round = 0; round < 2000; round++) {
+						int i = round % queries.length;
+						if (!expected.get(i).equals(toList(shared.topMatches(queries[i], 3))))
+							failure.set("wrong top matches for " + queries[i]);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertNull(failure.get());
+	}
+}
@@ -0,0 +1,74 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestHotSwapAutocompletor {
+
+	private File writeSource(String contents) throws IOException {
+		File file = File.createTempFile("hotswap", ".txt");
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+
+	/**
+	 * Tests that queries answer from the old dictionary until the reload
+	 * completes and from the new one afterwards
+	 */
+	@Test(timeout = 10000)
+	public void testReload() throws Exception {
+		File before = writeSource("3\n5\tape\n3\tapp\n1\tbat\n");
+		File after = writeSource("2\n2\tape\n7\tapple\n");
+		HotSwapAutocompletor auto = new HotSwapAutocompletor("TrieAutocomplete", before);
+		assertEquals("ape", auto.topMatch("ap"));
+		assertEquals(1, auto.weightOf("bat"), 0);
+
+		final int[] swaps = new int[1];
+		auto.addSwapListener(new Runnable() {
+			public void run() {
+				swaps[0]++;
+			}
+		});
+		Autocompletor old = auto.current();
+		assertSame(old, auto.reload(after).get());
+		assertEquals("apple", auto.topMatch("ap"));
+		assertEquals(0, auto.weightOf("bat"), 0);
+		assertEquals(1, swaps[0]);
+		assertEquals(1, auto.getReloadCount());
+		assertTrue(auto.getLastReloadNanos() > 0);
+		assertTrue(auto.getLastPeakHeapBytes() > 0);
+		// the replaced index still answers from the old dictionary
+		assertEquals("ape", old.topMatch("ap"));
+		auto.shutdown();
+	}
+
+	/**
+	 * Tests that a failed reload leaves the current index serving
+	 */
+	@Test(timeout = 10000)
+	public void testFailedReload() throws Exception {
+		File before = writeSource("1\n5\tape\n");
+		File broken = writeSource("2\n5\tape\n");
+		HotSwapAutocompletor auto = new HotSwapAutocompletor("BinarySearchAutocomplete", before);
+		Future<Autocompletor> reload = auto.reload(broken);
+		try {
+			reload.get();
+			fail("Reload of a truncated file should fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals("ape", auto.topMatch("a"));
+		assertEquals(0, auto.getReloadCount());
+		assertFalse(auto.isReloading());
+		auto.shutdown();
+	}
+}
@@ -0,0 +1,127 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class TestIndexSnapshot {
+
+	private String[] myNames = { "ape", "app", "ban", "bat", "bee", "car", "cat", "caf\u00e9" };
+	private double[] myWeights = { 6, 4, 2, 3, 5, 7, 1, 8 };
+
+	private File temp(String suffix) throws IOException {
+		File file = File.createTempFile("snapshot", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	private File writeSource(String contents) throws IOException {
+		File file = temp(".txt");
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+
+	private String[] iterToArr(Iterable<String> it) {
+		ArrayList<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Tests that a loaded snapshot answers every query the way the index it
+	 * was written from does
+	 */
+	@Test(timeout = 10000)
+	public void testRoundTrip() throws IOException {
+		BinarySearchAutocomplete original = new BinarySearchAutocomplete(myNames, myWeights);
+		File source = writeSource("1\n1\ta\n");
+		File snapshot = temp(".snap");
+		IndexSnapshot.write(original, source, snapshot);
+		BinarySearchAutocomplete loaded = IndexSnapshot.load(snapshot);
+		String[] queries = { "", "a", "ap", "b", "ba", "c", "ca", "caf", "cat", "d" };
+		for (String query : queries) {
+			assertEquals(original.topMatch(query), loaded.topMatch(query));
+			for (int k = 0; k < 9; k++)
+				assertArrayEquals(iterToArr(original.topMatches(query, k)), iterToArr(loaded.topMatches(query, k)));
+		}
+		for (String name : myNames)
+			assertEquals(original.weightOf(name), loaded.weightOf(name), 0);
+	}
+
+	/**
+	 * Tests that a snapshot stops being current once its source changes, and
+	 * that loadOrBuild then rebuilds it from the source
+	 */
+	@Test(timeout = 10000)
+	public void testStaleness() throws IOException {
+		File source = writeSource("2\n5\tcat\n3\tcar\n");
+		File snapshot = temp(".snap");
+		assertFalse(IndexSnapshot.isCurrent(snapshot, source));
+		assertEquals("cat", IndexSnapshot.loadOrBuild(source, snapshot).topMatch("ca"));
+		assertTrue(IndexSnapshot.isCurrent(snapshot, source));
+		try (FileOutputStream out = new FileOutputStream(source)) {
+			out.write("2\n5\tcat\n9\tcar\n".getBytes(StandardCharsets.UTF_8));
+		}
+		assertFalse(IndexSnapshot.isCurrent(snapshot, source));
+		assertEquals("car", IndexSnapshot.loadOrBuild(source, snapshot).topMatch("ca"));
+		assertTrue(IndexSnapshot.isCurrent(snapshot, source));
+	}
+
+	/**
+	 * Tests that a damaged snapshot is refused rather than served
+	 */
+	@Test(timeout = 10000)
+	public void testCorruption() throws IOException {
+		File source = writeSource("1\n1\ta\n");
+		File snapshot = temp(".snap");
+		IndexSnapshot.write(new BinarySearchAutocomplete(myNames, myWeights), source, snapshot);
+		try (RandomAccessFile raf = new RandomAccessFile(snapshot, "rw")) {
+			raf.seek(raf.length() - 20);
+			int b = raf.read();
+			raf.seek(raf.length() - 20);
+			raf.write(b ^ 1);
+		}
+		try {
+			IndexSnapshot.load(snapshot);
+			fail("No exception for a corrupt snapshot");
+		} catch (IOException e) {
+		}
+		try {
+			IndexSnapshot.load(source);
+			fail("No exception for a file that is not a snapshot");
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Tests that loadOrBuild replaces a corrupt or truncated snapshot of the
+	 * current source instead of failing
+	 */
+	@Test(timeout = 10000)
+	public void testRebuildDamaged() throws IOException {
+		File source = writeSource("2\n5\tcat\n3\tcar\n");
+		File snapshot = temp(".snap");
+		IndexSnapshot.loadOrBuild(source, snapshot);
+		try (RandomAccessFile raf = new RandomAccessFile(snapshot, "rw")) {
+			raf.seek(raf.length() - 20);
+			int b = raf.read();
+			raf.seek(raf.length() - 20);
+			raf.write(b ^ 1);
+		}
+		assertEquals("cat", IndexSnapshot.loadOrBuild(source, snapshot).topMatch("ca"));
+		assertEquals("cat", IndexSnapshot.load(snapshot).topMatch("ca"));
+		try (RandomAccessFile raf = new RandomAccessFile(snapshot, "rw")) {
+			raf.setLength(raf.length() - 9);
+		}
+		assertEquals("cat", IndexSnapshot.loadOrBuild(source, snapshot).topMatch("ca"));
+		assertEquals("cat", IndexSnapshot.load(snapshot).topMatch("ca"));
+	}
+}
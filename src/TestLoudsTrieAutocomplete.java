@@ -0,0 +1,33 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Runs the TrieAutocomplete tests against LoudsTrieAutocomplete, plus a
+ * dictionary that is one long chain of single-child nodes.
+ */
+public class TestLoudsTrieAutocomplete extends TestTrieAutocomplete {
+
+	@Override
+	public Autocompletor getInstance(String[] names, double[] weights) {
+		return new LoudsTrieAutocomplete(names, weights);
+	}
+
+	/**
+	 * Tests words that are prefixes of each other along one long chain, so
+	 * every node ends a word or has one child
+	 */
+	@Test(timeout = 10000)
+	public void testChain() {
+		String[] names = { "a", "aaaa", "aaaaaaaa", "aaaaaaaaaaaa" };
+		double[] weights = { 1, 4, 2, 3 };
+		Autocompletor test = getInstance(names, weights);
+		assertEquals("aaaa", test.topMatch(""));
+		assertEquals("aaaaaaaaaaaa", test.topMatch("aaaaa"));
+		assertArrayEquals(new String[] { "aaaa", "aaaaaaaaaaaa", "aaaaaaaa", "a" },
+				iterToArr(test.topMatches("", 10)));
+		assertArrayEquals(new String[] { "aaaaaaaaaaaa", "aaaaaaaa" }, iterToArr(test.topMatches("aaaaaa", 10)));
+		assertEquals(0.0, test.weightOf("aaa"), 0);
+		assertEquals(2.0, test.weightOf("aaaaaaaa"), 0);
+	}
+}
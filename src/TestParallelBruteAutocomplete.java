@@ -0,0 +1,102 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class TestParallelBruteAutocomplete {
+
+	private static String[] toArray(Iterable<String> it) {
+		ArrayList<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Tests that a dictionary large enough to be split across several tasks
+	 * answers exactly like BruteAutocomplete
+	 */
+	@Test(timeout = 20000)
+	public void testMatchesBrute() {
+		Random random = new Random(20);
+		LinkedHashSet<String> words = new LinkedHashSet<String>();
+		while (words.size() < 5 * ParallelBruteAutocomplete.LEAF_SIZE) {
+			StringBuilder word = new StringBuilder();
+			int length = 1 + random.nextInt(6);
+			for (int i = 0; i < length; i++)
+				word.append((char) ('a' + random.nextInt(8)));
+			words.add(word.toString());
+		}
+		String[] terms = words.toArray(new String[0]);
+		double[] weights = new double[terms.length];
+		// distinct weights keep the expected order unambiguous
+		for (int i = 0; i < weights.length; i++)
+			weights[i] = random.nextDouble() * 1000;
+		BruteAutocomplete brute = new BruteAutocomplete(terms, weights);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		ParallelBruteAutocomplete parallel = new ParallelBruteAutocomplete(terms, weights, pool);
+		WeightedMatches matches = new WeightedMatches();
+		String[] prefixes = { "", "a", "h", "cd", "dab", "aaaa", "abcdab", "z" };
+		for (String prefix : prefixes) {
+			assertEquals("wrong top match for " + prefix, brute.topMatch(prefix), parallel.topMatch(prefix));
+			for (int k : new int[] { 0, 1, 5, 50 }) {
+				String[] expected = toArray(brute.topMatches(prefix, k));
+				assertArrayEquals("wrong top matches for " + prefix + " " + k, expected,
+						toArray(parallel.topMatches(prefix, k)));
+				parallel.topMatchesWithWeights(prefix, k, matches);
+				assertEquals(expected.length, matches.size());
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals(expected[i], matches.term(i));
+					assertEquals(brute.weightOf(expected[i]), matches.weight(i), 0);
+				}
+			}
+			// a k past the dictionary size returns every match
+			assertArrayEquals(toArray(brute.topMatches(prefix, terms.length)),
+					toArray(parallel.topMatches(prefix, Integer.MAX_VALUE)));
+		}
+		assertEquals(brute.weightOf(terms[17]), parallel.weightOf(terms[17]), 0);
+		assertEquals(0, parallel.weightOf("abcdabc"), 0);
+		assertEquals(0, parallel.weightOf("ab" + terms[0]), 0);
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests the constructor checks and the empty and tied cases
+	 */
+	@Test(timeout = 10000)
+	public void testEdgeCases() {
+		try {
+			new ParallelBruteAutocomplete(new String[] { "a", "a" }, new double[] { 1, 2 });
+			fail("duplicate terms accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			new ParallelBruteAutocomplete(new String[] { "a" }, new double[] { -1 });
+			fail("negative weight accepted");
+		} catch (IllegalArgumentException e) {
+		}
+		ParallelBruteAutocomplete empty = new ParallelBruteAutocomplete(new String[0], new double[0]);
+		assertEquals("", empty.topMatch(""));
+		assertEquals(0, toArray(empty.topMatches("a", 3)).length);
+
+		ParallelBruteAutocomplete tied = new ParallelBruteAutocomplete(new String[] { "ab", "aa", "ac", "b" },
+				new double[] { 2, 2, 2, 1 });
+		// of equal weights the earlier term wins
+		assertEquals("ab", tied.topMatch("a"));
+		assertArrayEquals(new String[] { "ab", "aa" }, toArray(tied.topMatches("a", 2)));
+		try {
+			tied.topMatches(null, 1);
+			fail("null prefix accepted");
+		} catch (NullPointerException e) {
+		}
+		try {
+			tied.topMatches("a", -1);
+			fail("negative k accepted");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+}
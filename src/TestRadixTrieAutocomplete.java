@@ -0,0 +1,36 @@
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Runs the TrieAutocomplete tests against RadixTrieAutocomplete, plus tests
+ * for prefixes that end part of the way along a compressed edge.
+ */
+public class TestRadixTrieAutocomplete extends TestTrieAutocomplete {
+
+	@Override
+	public Autocompletor getInstance(String[] names, double[] weights) {
+		return new RadixTrieAutocomplete(names, weights);
+	}
+
+	/**
+	 * Tests queries whose prefix ends inside an edge label, and words that
+	 * split an existing edge or end where an edge already ends.
+	 */
+	@Test(timeout = 10000)
+	public void testMidEdgePrefixes() {
+		String[] names = { "harry potter", "harry", "hare", "hat", "horse", "horseking" };
+		double[] weights = { 10, 3, 5, 1, 7, 8 };
+		Autocompletor test = getInstance(names, weights);
+		String[] queries = { "harry p", "harry pot", "har", "hars", "horsek", "horses", "ha", "h", "harry potter!" };
+		String[] results = { "harry potter", "harry potter", "harry potter", "", "horseking", "", "harry potter",
+				"harry potter", "" };
+		for (int i = 0; i < queries.length; i++)
+			assertEquals("wrong top match for " + queries[i], results[i], test.topMatch(queries[i]));
+		assertArrayEquals(new String[] { "harry potter", "hare", "harry" }, iterToArr(test.topMatches("har", 5)));
+		assertArrayEquals(new String[] { "horseking", "horse" }, iterToArr(test.topMatches("hors", 5)));
+		assertEquals(3.0, test.weightOf("harry"), 0);
+		assertEquals(0.0, test.weightOf("harr"), 0);
+		assertEquals(0.0, test.weightOf("horsekings"), 0);
+	}
+}
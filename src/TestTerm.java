@@ -125,4 +125,23 @@ public class TestTerm {
 			assertTrue("no tab", t.toString().contains("\t"));
 		}
 	}
+
+	/**
+	 * Tests PrefixOrder and comparePrefix only look at the first r letters,
+	 * and fall back to whole-word order for words shorter than r
+	 */
+	@Test(timeout = 10000)
+	public void testPrefixOrder() {
+		Term.PrefixOrder order = new Term.PrefixOrder(3);
+		assertEquals(0, order.compare(new Term("jalapeno", 0), new Term("jalapeno membrane", 0)));
+		assertTrue(order.compare(new Term("cap", 0), new Term("car", 0)) < 0);
+		assertTrue(order.compare(new Term("ca", 0), new Term("cab", 0)) < 0);
+		assertTrue(order.compare(new Term("cab", 0), new Term("ca", 0)) > 0);
+		assertEquals(0, order.compare(new Term("ca", 0), new Term("ca", 0)));
+		assertEquals(0, Term.comparePrefix("jalapeno membrane", "jalapeno"));
+		assertEquals(0, Term.comparePrefix("chipotle", ""));
+		assertTrue(Term.comparePrefix("jalap", "jalapeno") < 0);
+		assertTrue(Term.comparePrefix("habanero", "jalapeno") < 0);
+		assertTrue(Term.comparePrefix("jalapeno", "habanero") > 0);
+	}
 }
@@ -0,0 +1,99 @@
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestTermFileLoader {
+
+	/**
+	 * Writes contents to a temporary file that is deleted on exit
+	 */
+	private File write(String contents) throws IOException {
+		File file = File.createTempFile("terms", ".txt");
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(contents.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+
+	/**
+	 * Tests that padded weights, empty terms and terms made only of spaces or
+	 * backslashes come through unchanged
+	 */
+	@Test(timeout = 10000)
+	public void testEmptyStrings() throws IOException {
+		TermFileLoader loader = TermFileLoader.load(new File("data/empty-string.txt"));
+		String[] terms = loader.getTerms();
+		double[] weights = loader.getWeights();
+		assertEquals(17, terms.length);
+		assertEquals(17, weights.length);
+		assertEquals("", terms[0]);
+		assertEquals(6001, weights[0], 0);
+		assertEquals("\\ \\ ", terms[1]);
+		assertEquals("  x  ", terms[5]);
+		assertEquals("    ", terms[7]);
+		assertEquals(" ", terms[16]);
+		assertEquals(1000, weights[16], 0);
+	}
+
+	/**
+	 * Tests fractional and long weights, multi-byte characters, a CRLF line
+	 * and a last line without a newline
+	 */
+	@Test(timeout = 10000)
+	public void testWeightsAndEncoding() throws IOException {
+		File file = write("4\n  944319.9538409058\tcaf\u00e9\r\n0.5\tna\u00efve r\u00e9sum\u00e9\n"
+				+ "123456789012345678901234\tbig\n7\tlast");
+		TermFileLoader loader = TermFileLoader.load(file);
+		assertArrayEquals(new String[] { "caf\u00e9", "na\u00efve r\u00e9sum\u00e9", "big", "last" },
+				loader.getTerms());
+		assertArrayEquals(new double[] { 944319.9538409058, 0.5, 123456789012345678901234.0, 7 },
+				loader.getWeights(), 0);
+	}
+
+	/**
+	 * Tests that lines past the declared count are ignored, and that a short
+	 * file or a line without a tab is reported as malformatted
+	 */
+	@Test(timeout = 10000)
+	public void testDeclaredCount() throws IOException {
+		TermFileLoader loader = TermFileLoader.load(write("1\n1\ta\n2\tb\n"));
+		assertArrayEquals(new String[] { "a" }, loader.getTerms());
+		String[] malformed = { "3\n1\ta\n2\tb\n", "2\n1\ta\n2 b\n", "x\n1\ta\n", "1\nheavy\ta\n" };
+		for (String contents : malformed) {
+			try {
+				TermFileLoader.load(write(contents));
+				fail("No exception for " + contents);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Tests that parallel loading gives exactly what sequential loading does,
+	 * including files with multi-byte characters, a last line without a
+	 * newline, and more threads than chunks
+	 */
+	@Test(timeout = 60000)
+	public void testParallelMatchesSequential() throws IOException {
+		String[] files = { "data/cities.txt", "data/fourletterwordshalf.txt", "data/empty-string.txt" };
+		for (String name : files) {
+			TermFileLoader sequential = TermFileLoader.load(new File(name));
+			for (int threads : new int[] { 2, 3, 8 }) {
+				TermFileLoader parallel = TermFileLoader.load(new File(name), threads);
+				assertArrayEquals(name + " terms", sequential.getTerms(), parallel.getTerms());
+				assertArrayEquals(name + " weights", sequential.getWeights(), parallel.getWeights(), 0);
+			}
+		}
+		try {
+			TermFileLoader.load(write("3\n1\ta\n2\tb\n"), 4);
+			fail("No exception for a short file");
+		} catch (IOException e) {
+		}
+	}
+}
@@ -1,8 +1,12 @@
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -76,7 +80,7 @@ public class TestTrieAutocomplete {
 		}
 	}
 
-	private String[] iterToArr(Iterable<String> it) {
+	protected String[] iterToArr(Iterable<String> it) {
 		ArrayList<String> list = new ArrayList<String>();
 		for (String s: it)
 			list.add(s);
@@ -157,4 +161,233 @@ public class TestTrieAutocomplete {
 					outputs.size() <= 1);
 		}
 	}
+
+	/**
+	 * Tests lookups through a node with more children than Node scans
+	 * linearly, so the binary search path is exercised, and that prefixes of
+	 * words are not reported as terms.
+	 */
+	@Test(timeout = 10000)
+	public void testWideFanout() {
+		String[] names = new String[26];
+		double[] weights = new double[26];
+		// insert out of order so children are not added already sorted
+		for (int i = 0; i < 26; i++) {
+			int letter = (i * 7) % 26;
+			names[i] = "x" + (char) ('a' + letter);
+			weights[i] = letter + 1;
+		}
+		Autocompletor test = getInstance(names, weights);
+		for (int i = 0; i < 26; i++)
+			assertEquals("wrong weight for " + names[i], weights[i], test.weightOf(names[i]), 0);
+		assertEquals(0.0, test.weightOf("x"), 0);
+		assertEquals(0.0, test.weightOf("xz!"), 0);
+		assertEquals("xz", test.topMatch("x"));
+		assertArrayEquals(new String[] { "xz", "xy", "xx" }, iterToArr(test.topMatches("x", 3)));
+	}
+
+	/**
+	 * A word lighter than one of its extensions must not be reported ahead of
+	 * that extension.
+	 */
+	@Test(timeout = 10000)
+	public void testPrefixWordLighterThanExtension() {
+		String[] names = { "ab", "abc", "abd" };
+		double[] weights = { 1, 5, 3 };
+		Autocompletor test = getInstance(names, weights);
+		assertArrayEquals(new String[] { "abc", "abd", "ab" }, iterToArr(test.topMatches("a", 3)));
+		assertEquals("abc", test.topMatch("ab"));
+	}
+
+	/**
+	 * Builds random dictionaries of up to a few thousand words, some of them
+	 * long, over an alphabet mixing ASCII with characters far apart in
+	 * value, and compares every answer on random prefixes against
+	 * BruteAutocomplete
+	 */
+	@Test(timeout = 30000)
+	public void testMatchesBrute() {
+		String alphabet = "abc\u00e9\u4e2d\uffee ";
+		Random random = new Random(22);
+		WeightedMatches buffer = new WeightedMatches();
+		for (int trial = 0; trial < 12; trial++) {
+			HashMap<String, Double> dictionary = new HashMap<String, Double>();
+			int size = random.nextInt(3000);
+			for (int i = 0; i < size; i++) {
+				StringBuilder word = new StringBuilder();
+				int length = random.nextInt(4) == 0 ? 10 + random.nextInt(30) : random.nextInt(6);
+				for (int j = 0; j < length; j++)
+					word.append(alphabet.charAt(random.nextInt(alphabet.length())));
+				dictionary.put(word.toString(), random.nextDouble() * 100);
+			}
+			String[] words = dictionary.keySet().toArray(new String[0]);
+			double[] wordWeights = new double[words.length];
+			for (int i = 0; i < words.length; i++)
+				wordWeights[i] = dictionary.get(words[i]);
+			BruteAutocomplete brute = new BruteAutocomplete(words, wordWeights);
+			Autocompletor test = getInstance(words, wordWeights);
+			for (int query = 0; query < 200; query++) {
+				String text;
+				if (words.length > 0 && random.nextBoolean()) {
+					String word = words[random.nextInt(words.length)];
+					text = word.substring(0, random.nextInt(word.length() + 1));
+				} else {
+					StringBuilder prefix = new StringBuilder();
+					int length = random.nextInt(4);
+					for (int j = 0; j < length; j++)
+						prefix.append(alphabet.charAt(random.nextInt(alphabet.length())));
+					text = prefix.toString();
+				}
+				assertEquals("wrong top match for " + text, brute.topMatch(text), test.topMatch(text));
+				assertEquals("wrong weight for " + text, brute.weightOf(text), test.weightOf(text), 0);
+				int k = 1 + random.nextInt(8);
+				String[] expected = iterToArr(brute.topMatches(text, k));
+				assertArrayEquals("wrong top matches for " + text + " " + k, expected,
+						iterToArr(test.topMatches(text, k)));
+				test.topMatchesWithWeights(text, k, buffer);
+				assertEquals(expected.length, buffer.size());
+				for (int i = 0; i < expected.length; i++)
+					assertEquals(brute.weightOf(expected[i]), buffer.weight(i), 0);
+			}
+			assertEquals(0, test.weightOf("z"), 0);
+		}
+	}
+
+	/**
+	 * Tests that matchIterator yields exactly what topMatches returns for
+	 * every k, that a stream limited to k matches agrees too, and that the
+	 * default doubling iterator of a wrapper that only has topMatches does
+	 * the same
+	 */
+	@Test(timeout = 10000)
+	public void testMatchIterator() {
+		final Autocompletor test = getInstance();
+		Autocompletor plain = new Autocompletor() {
+			public Iterable<String> topMatches(String prefix, int k) {
+				return test.topMatches(prefix, k);
+			}
+
+			public String topMatch(String prefix) {
+				return test.topMatch(prefix);
+			}
+
+			public double weightOf(String term) {
+				return test.weightOf(term);
+			}
+		};
+		String[] queries = { "", "a", "ap", "ape", "b", "ba", "c", "ca", "d" };
+		for (Autocompletor auto : new Autocompletor[] { test, plain }) {
+			for (String query : queries) {
+				String[] all = iterToArr(auto.topMatches(query, names.length + 1));
+				ArrayList<String> lazy = new ArrayList<String>();
+				for (Iterator<String> it = auto.matchIterator(query); it.hasNext();)
+					lazy.add(it.next());
+				assertArrayEquals("wrong matches for " + query, all, lazy.toArray(new String[0]));
+				for (int k = 0; k <= all.length; k++)
+					assertArrayEquals("wrong stream for " + query + " " + k, iterToArr(auto.topMatches(query, k)),
+							auto.matchStream(query).limit(k).toArray(String[]::new));
+			}
+			if (auto.matchIterator("").hasNext())
+				assertEquals(auto.topMatch(""), auto.matchIterator("").next());
+		}
+	}
+
+	/**
+	 * Tests that topMatchesWithWeights reports the same terms as topMatches,
+	 * each with its weight, and that reusing one buffer leaves nothing from
+	 * an earlier, longer result behind
+	 */
+	@Test(timeout = 10000)
+	public void testTopMatchesWithWeights() {
+		Autocompletor test = getInstance();
+		WeightedMatches buffer = new WeightedMatches(1);
+		String[] queries = { "", "a", "ap", "b", "ba", "c", "cat", "d" };
+		for (int k = 0; k <= 8; k++) {
+			for (String query : queries) {
+				String[] expected = iterToArr(test.topMatches(query, k));
+				assertSame(buffer, test.topMatchesWithWeights(query, k, buffer));
+				assertEquals("wrong size for " + query + " " + k, expected.length, buffer.size());
+				for (int i = 0; i < expected.length; i++) {
+					assertEquals(expected[i], buffer.term(i));
+					assertEquals(test.weightOf(expected[i]), buffer.weight(i), 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that topMatch breaks ties the same way whatever order the words
+	 * were added in: a word beats its equally heavy extensions, and the
+	 * alphabetically first branch beats its equally heavy siblings
+	 */
+	@Test(timeout = 10000)
+	public void testTopMatchTies() {
+		String[][] orders = { { "a", "ab", "ac" }, { "ac", "ab", "a" }, { "ab", "a", "ac" } };
+		for (String[] order : orders) {
+			Autocompletor test = getInstance(order, new double[] { 1, 1, 1 });
+			assertEquals("a", test.topMatch(""));
+			assertEquals("a", test.topMatch("a"));
+		}
+		String[][] siblings = { { "ab", "ac" }, { "ac", "ab" } };
+		for (String[] order : siblings)
+			assertEquals("ab", getInstance(order, new double[] { 2, 2 }).topMatch("a"));
+	}
+
+	/**
+	 * Tests that sorted and unsorted input give the same answers, and that a
+	 * duplicate is rejected wherever it falls in the input
+	 */
+	@Test(timeout = 10000)
+	public void testSortedInput() {
+		String[] sorted = { "ape", "app", "ban", "bat", "bee", "car", "cat" };
+		double[] sortedWeights = { 6, 4, 2, 3, 5, 7, 1 };
+		Autocompletor fromSorted = getInstance(sorted, sortedWeights);
+		Autocompletor fromUnsorted = getInstance();
+		for (String query : new String[] { "", "a", "ap", "b", "ba", "be", "c", "cat", "d" }) {
+			assertEquals(fromUnsorted.topMatch(query), fromSorted.topMatch(query));
+			assertArrayEquals(iterToArr(fromUnsorted.topMatches(query, 8)), iterToArr(fromSorted.topMatches(query, 8)));
+			assertEquals(fromUnsorted.weightOf(query), fromSorted.weightOf(query), 0);
+		}
+		String[][] duplicated = { { "a", "ab", "ab" }, { "ab", "a", "ab" }, { "b", "a", "b" } };
+		for (String[] names : duplicated) {
+			try {
+				getInstance(names, new double[] { 1, 2, 3 });
+				fail("duplicate terms accepted");
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	/**
+	 * Types, deletes and replaces text in a session, including characters
+	 * that lead out of the dictionary, and checks every answer against
+	 * querying the whole text
+	 */
+	@Test(timeout = 10000)
+	public void testSession() {
+		Autocompletor test = getInstance();
+		AutocompleteSession session = test.newSession();
+		Random random = new Random(7);
+		String alphabet = "abcenptx";
+		WeightedMatches buffer = new WeightedMatches();
+		for (int step = 0; step < 500; step++) {
+			int op = random.nextInt(4);
+			if (op <= 1)
+				session.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			else if (op == 2)
+				session.backspace();
+			else
+				session.setText(names[random.nextInt(names.length)].substring(0, random.nextInt(4)));
+			String text = session.getText();
+			assertEquals("wrong top match for " + text, test.topMatch(text), session.topMatch());
+			for (int k = 0; k <= 3; k++) {
+				String[] expected = iterToArr(test.topMatches(text, k));
+				assertArrayEquals("wrong top matches for " + text, expected, iterToArr(session.topMatches(k)));
+				session.topMatchesWithWeights(k, buffer);
+				assertEquals(expected.length, buffer.size());
+				for (int i = 0; i < expected.length; i++)
+					assertEquals(expected[i], buffer.term(i));
+			}
+		}
+	}
 }
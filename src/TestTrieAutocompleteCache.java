@@ -0,0 +1,62 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+/**
+ * Tests of the top word caches only TrieAutocomplete has, kept apart from
+ * TestTrieAutocomplete so the classes that rerun its tests against other
+ * tries do not run these again.
+ */
+public final class TestTrieAutocompleteCache {
+
+	private String[] names = { "ape", "app", "ban", "bat", "bee", "car", "cat" };
+	private double[] weights = { 6, 4, 2, 3, 5, 7, 1 };
+
+	private String[] iterToArr(Iterable<String> it) {
+		ArrayList<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Tries that cache top word lists must answer every query exactly as an
+	 * uncached trie does, whether k fits in the cache or not and whether the
+	 * prefix ends above or below the depth cutoff.
+	 */
+	@Test(timeout = 10000)
+	public void testCachedTopWords() {
+		String[] queries = { "", "a", "ap", "ape", "app", "b", "ba", "ban", "be", "bee", "c", "ca", "cat", "d" };
+		TrieAutocomplete plain = new TrieAutocomplete(names, weights);
+		int[][] configurations = { { 1, 0 }, { 2, 1 }, { 3, 2 }, { 8, 10 } };
+		for (int[] config : configurations) {
+			TrieAutocomplete cached = new TrieAutocomplete(names, weights, config[0], config[1]);
+			for (String query : queries) {
+				assertEquals("wrong top match for " + query, plain.topMatch(query), cached.topMatch(query));
+				for (int k = 1; k <= 8; k++)
+					assertArrayEquals("wrong top matches for " + query + " " + k,
+							iterToArr(plain.topMatches(query, k)), iterToArr(cached.topMatches(query, k)));
+			}
+		}
+	}
+
+	/**
+	 * Tests that a cached trie's iterator carries on past its cached list
+	 * without repeating or dropping words
+	 */
+	@Test(timeout = 10000)
+	public void testCachedMatchIterator() {
+		TrieAutocomplete plain = new TrieAutocomplete(names, weights);
+		TrieAutocomplete cached = new TrieAutocomplete(names, weights, 2, 1);
+		for (String query : new String[] { "", "a", "b", "ba", "c" }) {
+			String[] expected = iterToArr(plain.topMatches(query, names.length));
+			ArrayList<String> lazy = new ArrayList<String>();
+			for (Iterator<String> it = cached.matchIterator(query); it.hasNext();)
+				lazy.add(it.next());
+			assertArrayEquals("wrong matches for " + query, expected, lazy.toArray(new String[0]));
+		}
+	}
+}
@@ -0,0 +1,227 @@
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+/**
+ * Tests of what only TrieAutocomplete does, kept apart from
+ * TestTrieAutocomplete so the classes that rerun its tests against other
+ * tries do not run these again.
+ */
+public final class TestTrieAutocompleteOnly {
+
+	private String[] names = { "ape", "app", "ban", "bat", "bee", "car", "cat" };
+	private double[] weights = { 6, 4, 2, 3, 5, 7, 1 };
+
+	private String[] iterToArr(Iterable<String> it) {
+		ArrayList<String> list = new ArrayList<String>();
+		for (String s : it)
+			list.add(s);
+		return list.toArray(new String[0]);
+	}
+
+	/**
+	 * Applies random inserts, removals and weight changes to tries with and
+	 * without top word caches, and after every change compares topMatch,
+	 * topMatches and weightOf on every short prefix against a
+	 * BruteAutocomplete built from scratch.
+	 */
+	@Test(timeout = 30000)
+	public void testRandomUpdates() {
+		Random random = new Random(42);
+		int[][] configurations = { { 0, 0 }, { 3, 1 }, { 2, 3 } };
+		for (int[] config : configurations) {
+			TrieAutocomplete trie = new TrieAutocomplete(names, weights, config[0], config[1]);
+			Map<String, Double> dictionary = new HashMap<String, Double>();
+			for (int i = 0; i < names.length; i++)
+				dictionary.put(names[i], weights[i]);
+			for (int step = 0; step < 300; step++) {
+				String word = randomWord(random);
+				// distinct random weights keep the expected order unambiguous
+				double weight = random.nextDouble() * 100;
+				int op = random.nextInt(3);
+				if (op == 0 && !dictionary.containsKey(word)) {
+					trie.insert(word, weight);
+					dictionary.put(word, weight);
+				} else if (op == 1) {
+					assertEquals(dictionary.remove(word) != null, trie.remove(word));
+				} else {
+					boolean present = dictionary.containsKey(word);
+					if (present)
+						dictionary.put(word, weight);
+					assertEquals(present, trie.updateWeight(word, weight));
+				}
+				String[] words = dictionary.keySet().toArray(new String[0]);
+				double[] wordWeights = new double[words.length];
+				for (int i = 0; i < words.length; i++)
+					wordWeights[i] = dictionary.get(words[i]);
+				BruteAutocomplete brute = new BruteAutocomplete(words, wordWeights);
+				for (int i = 0; i < 20; i++) {
+					String query = randomWord(random);
+					String prefix = query.substring(0, random.nextInt(query.length() + 1));
+					assertEquals("wrong top match for " + prefix, brute.topMatch(prefix), trie.topMatch(prefix));
+					assertEquals("wrong weight for " + query, brute.weightOf(query), trie.weightOf(query), 0);
+					int k = 1 + random.nextInt(5);
+					assertArrayEquals("wrong top matches for " + prefix + " " + k,
+							iterToArr(brute.topMatches(prefix, k)), iterToArr(trie.topMatches(prefix, k)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Words of up to four letters from a three letter alphabet, so that
+	 * updates often share prefixes and remove whole branches.
+	 */
+	private static String randomWord(Random random) {
+		StringBuilder word = new StringBuilder();
+		int length = random.nextInt(5);
+		for (int i = 0; i < length; i++)
+			word.append((char) ('a' + random.nextInt(3)));
+		return word.toString();
+	}
+
+	/**
+	 * Tests that update methods reject bad arguments and that a trie emptied
+	 * by removals answers like an empty trie
+	 */
+	@Test(timeout = 10000)
+	public void testUpdateEdgeCases() {
+		TrieAutocomplete trie = new TrieAutocomplete(names, weights);
+		try {
+			trie.insert("ape", 1);
+			fail("Duplicate insert should throw");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			trie.updateWeight("ape", -1);
+			fail("Negative weight should throw");
+		} catch (IllegalArgumentException e) {
+		}
+		assertFalse(trie.remove("ap"));
+		assertFalse(trie.updateWeight("zoo", 1));
+		for (String name : names)
+			assertTrue(trie.remove(name));
+		assertEquals("", trie.topMatch(""));
+		assertEquals(0, iterToArr(trie.topMatches("", 5)).length);
+		trie.insert("zoo", 2);
+		assertEquals("zoo", trie.topMatch(""));
+	}
+
+	/**
+	 * Builds tries in parallel from random words, most of which share a
+	 * first letter so that big buckets are split again, and compares every
+	 * answer on their prefixes with a sequentially built trie; also checks
+	 * that duplicates are rejected whether they fall in a split bucket or a
+	 * sequentially built one
+	 */
+	@Test(timeout = 30000)
+	public void testParallelBuild() {
+		Random random = new Random(25);
+		HashSet<String> unique = new HashSet<String>();
+		while (unique.size() < 3 * TrieAutocomplete.PARALLEL_LEAF_SIZE) {
+			StringBuilder word = new StringBuilder(random.nextInt(4) == 0 ? "b" : "a");
+			int length = random.nextInt(8);
+			for (int i = 0; i < length; i++)
+				word.append((char) ('a' + random.nextInt(4)));
+			unique.add(word.toString());
+		}
+		unique.add("");
+		String[] words = unique.toArray(new String[0]);
+		double[] wordWeights = new double[words.length];
+		for (int i = 0; i < words.length; i++)
+			wordWeights[i] = random.nextDouble();
+		TrieAutocomplete sequential = new TrieAutocomplete(words, wordWeights);
+		for (int threads : new int[] { 1, 4 }) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			TrieAutocomplete parallel = new TrieAutocomplete(words, wordWeights, pool);
+			for (int i = 0; i < 300; i++) {
+				String word = words[random.nextInt(words.length)];
+				String prefix = word.substring(0, random.nextInt(word.length() + 1));
+				assertEquals(sequential.topMatch(prefix), parallel.topMatch(prefix));
+				assertArrayEquals(iterToArr(sequential.topMatches(prefix, 5)), iterToArr(parallel.topMatches(prefix, 5)));
+				assertEquals(sequential.weightOf(word), parallel.weightOf(word), 0);
+			}
+			for (String duplicate : new String[] { "", "a", words[0] }) {
+				String[] withDuplicate = Arrays.copyOf(words, words.length + 2);
+				withDuplicate[words.length] = duplicate;
+				withDuplicate[words.length + 1] = duplicate;
+				try {
+					new TrieAutocomplete(withDuplicate, new double[withDuplicate.length], pool);
+					fail("duplicate terms accepted");
+				} catch (IllegalArgumentException e) {
+				}
+			}
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compares spellCheck and fuzzyTopMatches on random dictionaries against
+	 * computing the edit distance to every word
+	 */
+	@Test(timeout = 30000)
+	public void testSpellCheck() {
+		Random random = new Random(11);
+		for (int trial = 0; trial < 20; trial++) {
+			HashMap<String, Double> dictionary = new HashMap<String, Double>();
+			for (int i = 0; i < 60; i++)
+				dictionary.put(randomWord(random), random.nextDouble());
+			String[] words = dictionary.keySet().toArray(new String[0]);
+			double[] wordWeights = new double[words.length];
+			for (int i = 0; i < words.length; i++)
+				wordWeights[i] = dictionary.get(words[i]);
+			TrieAutocomplete trie = new TrieAutocomplete(words, wordWeights);
+			for (int query = 0; query < 20; query++) {
+				String target = randomWord(random);
+				int dist = random.nextInt(3);
+				int k = 1 + random.nextInt(6);
+				ArrayList<Term> close = new ArrayList<Term>();
+				ArrayList<Term> closePrefix = new ArrayList<Term>();
+				for (String word : words) {
+					if (editDistance(word, target) <= dist)
+						close.add(new Term(word, dictionary.get(word)));
+					for (int end = 0; end <= word.length(); end++) {
+						if (editDistance(word.substring(0, end), target) <= dist) {
+							closePrefix.add(new Term(word, dictionary.get(word)));
+							break;
+						}
+					}
+				}
+				String[] expected = heaviest(close, k);
+				if (dictionary.containsKey(target))
+					expected = new String[0];
+				assertArrayEquals("wrong spellCheck for " + target + " " + dist,
+						expected, iterToArr(trie.spellCheck(target, dist, k)));
+				assertArrayEquals("wrong fuzzyTopMatches for " + target + " " + dist,
+						heaviest(closePrefix, k), iterToArr(trie.fuzzyTopMatches(target, dist, k)));
+			}
+		}
+	}
+
+	private static String[] heaviest(ArrayList<Term> terms, int k) {
+		Term[] sorted = terms.toArray(new Term[0]);
+		Arrays.sort(sorted, new Term.ReverseWeightOrder());
+		String[] top = new String[Math.min(k, sorted.length)];
+		for (int i = 0; i < top.length; i++)
+			top[i] = sorted[i].getWord();
+		return top;
+	}
+
+	private static int editDistance(String a, String b) {
+		int[][] table = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++)
+			for (int j = 0; j <= b.length(); j++)
+				table[i][j] = i == 0 ? j : j == 0 ? i
+						: Math.min(table[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1),
+								Math.min(table[i - 1][j], table[i][j - 1]) + 1);
+		return table[a.length()][b.length()];
+	}
+}
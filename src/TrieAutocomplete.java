@@ -1,8 +1,15 @@
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * General trie/priority queue algorithm for implementing Autocompletor
  * 
+ * Words can be inserted, removed and reweighted after construction without
+ * rebuilding the trie. These methods modify the trie, so they must not run
+ * while other threads are querying it; share a FrozenTrieAutocomplete
+ * instead when the dictionary is fixed.
+ * 
  * @author Austin Lu
  * @author Jeff Forbes
  */
@@ -11,7 +18,29 @@ public class TrieAutocomplete implements Autocompletor {
 	/**
 	 * Root of entire trie
 	 */
-	protected Node myRoot; // only can be accessed from inside TriAutocomplete
+	protected final Node myRoot; // only can be accessed from inside TriAutocomplete
+
+	/**
+	 * Length of the top word list cached at each node, or 0 if no lists are
+	 * cached.
+	 */
+	protected final int myCacheSize;
+
+	/**
+	 * Deepest level of the trie (the root is level 0) whose nodes cache a top
+	 * word list.
+	 */
+	protected final int myCacheDepth;
+
+	/**
+	 * The term pool: every word in the trie, at the myTermId of the node
+	 * that ends it. Slots of removed words are null until an insert reuses
+	 * them from myFreeIds.
+	 */
+	private String[] myTerms;
+	private int myTermCount;
+	private int[] myFreeIds = new int[0];
+	private int myFreeCount;
 
 	/**
 	 * Constructor method for TrieAutocomplete. Should initialize the trie
@@ -28,23 +57,465 @@ public class TrieAutocomplete implements Autocompletor {
 	 *             if terms and weights are different weight
 	 */
 	public TrieAutocomplete(String[] terms, double[] weights) {
+		this(terms, weights, 0, 0);
+	}
+
+	/**
+	 * Constructs a TrieAutocomplete in which every node at depth cacheDepth or
+	 * less stores the cacheSize heaviest words of its subtree, so that
+	 * topMatches with k <= cacheSize on a prefix of at most cacheDepth
+	 * characters is a descent plus an array copy. Memory grows with both
+	 * parameters; cacheSize 0 disables the cache.
+	 * 
+	 * @param terms
+	 *            - The words we will autocomplete from
+	 * @param weights
+	 *            - Their weights, such that terms[i] has weight weights[i].
+	 * @param cacheSize
+	 *            - Number of top words cached per node
+	 * @param cacheDepth
+	 *            - Deepest level whose nodes cache their top words
+	 * @throws NullPointerException
+	 *             if either array is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths, or cacheSize or
+	 *             cacheDepth is negative
+	 */
+	public TrieAutocomplete(String[] terms, double[] weights, int cacheSize, int cacheDepth) {
+		this(terms, weights, cacheSize, cacheDepth, null);
+	}
+
+	/**
+	 * Constructs a TrieAutocomplete, building the trie in parallel on pool.
+	 * The terms are split by their leading characters into independent
+	 * subtrees, and each subtree is sorted and built by its own task. The
+	 * result is the same trie a sequential build makes.
+	 * 
+	 * @throws NullPointerException
+	 *             if any argument is null
+	 * @throws IllegalArgumentException
+	 *             if terms and weights are different lengths
+	 */
+	public TrieAutocomplete(String[] terms, double[] weights, ForkJoinPool pool) {
+		this(terms, weights, 0, 0, Objects.requireNonNull(pool));
+	}
+
+	/**
+	 * Builds sequentially if pool is null, otherwise in parallel on pool.
+	 */
+	private TrieAutocomplete(String[] terms, double[] weights, int cacheSize, int cacheDepth, ForkJoinPool pool) {
+		if (cacheSize < 0 || cacheDepth < 0)
+			throw new IllegalArgumentException("Negative cache size or depth");
 		if (terms == null || weights == null)
 			throw new NullPointerException("One or more arguments null");
 		// 2. Length of terms and weights are equal
 		if (terms.length != weights.length)
 			throw new IllegalArgumentException("Terms and weights are not the same length");
-		HashSet<String> words = new HashSet<String>();
 		// Represent the root as a dummy/placeholder node
 		myRoot = new Node('-', null, 0);
+		// a word's id is its index in terms
+		myTerms = terms.clone();
+		myTermCount = terms.length;
+		if (pool == null) {
+			build(terms, weights, TermSort.sortedOrder(terms), 0, terms.length, myRoot, 0);
+		} else {
+			int[] order = new int[terms.length];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			// split below the root whatever the size, and below any other
+			// node whose subtree is too big to leave every worker busy
+			int limit = Math.max(PARALLEL_LEAF_SIZE, terms.length / (4 * pool.getParallelism()));
+			pool.invoke(new BuildTask(terms, weights, order, 0, terms.length, myRoot, 0, limit));
+		}
+		myCacheSize = cacheSize;
+		myCacheDepth = cacheDepth;
+		if (myCacheSize > 0)
+			cacheTopWords(myRoot, 0);
+	}
+
+	/**
+	 * Builds the subtree below start from order[lo, hi), the sorted indices
+	 * of the terms that start with start's prefix, which is depth characters
+	 * long. The nodes of the previous word stay on a path; each word keeps
+	 * the part of the path it shares with the previous one and appends new
+	 * nodes below it, which always sort after their existing siblings. A node
+	 * that drops off the path can gain no more words, so its
+	 * mySubtreeMaxWeight and myBestWord are set then, from its finished
+	 * children, and start is finished last. Duplicates are adjacent in
+	 * sorted order.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a term is duplicated
+	 */
+	private static void build(String[] terms, double[] weights, int[] order, int lo, int hi, Node start, int depth) {
+		// path[d] is the node of the previous word at depth base + d
+		int base = depth;
+		Node[] path = new Node[16];
+		path[0] = start;
+		String previous = null;
+		for (int n = lo; n < hi; n++) {
+			int i = order[n];
+			String word = terms[i];
+			int common = base;
+			if (previous != null) {
+				int limit = Math.min(word.length(), previous.length());
+				while (common < limit && word.charAt(common) == previous.charAt(common))
+					common++;
+				if (common == word.length() && common == previous.length())
+					throw new IllegalArgumentException("Duplicate term " + word);
+			}
+			for (; depth > common; depth--)
+				finish(path[depth - base]);
+			for (; depth < word.length(); depth++) {
+				char ch = word.charAt(depth);
+				Node child = new Node(ch, path[depth - base], 0);
+				path[depth - base].appendChild(ch, child);
+				if (depth + 1 - base == path.length)
+					path = Arrays.copyOf(path, 2 * path.length);
+				path[depth + 1 - base] = child;
+			}
+			Node node = path[depth - base];
+			node.isWord = true;
+			node.myTermId = i;
+			node.myWeight = weights[i];
+			previous = word;
+		}
+		for (; depth >= base; depth--)
+			finish(path[depth - base]);
+	}
+
+	/**
+	 * Subtrees of at most this many terms are sorted and built by one task.
+	 */
+	static final int PARALLEL_LEAF_SIZE = 1 << 12;
+
+	/**
+	 * Builds the subtree below a node from order[lo, hi), the unsorted
+	 * indices of the terms that start with its prefix of length depth. Below
+	 * the root, or any node with more than limit terms, the terms are
+	 * bucketed by their next character, one child is made per bucket and
+	 * each child's subtree is built by a forked task; the node is finished
+	 * once they have all joined. Smaller subtrees are sorted and built
+	 * sequentially. Splitting big buckets again copes with skewed data, where
+	 * most terms share a first letter, without splitting every bucket.
+	 */
+	private static class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final String[] myTerms;
+		private final double[] myWeights;
+		private final int[] myOrder;
+		private final int myLo;
+		private final int myHi;
+		private final Node myNode;
+		private final int myDepth;
+		private final int myLimit;
+
+		BuildTask(String[] terms, double[] weights, int[] order, int lo, int hi, Node node, int depth, int limit) {
+			myTerms = terms;
+			myWeights = weights;
+			myOrder = order;
+			myLo = lo;
+			myHi = hi;
+			myNode = node;
+			myDepth = depth;
+			myLimit = limit;
+		}
+
+		@Override
+		protected void compute() {
+			if (myDepth > 0 && myHi - myLo <= myLimit) {
+				TermSort.sort(myTerms, myOrder, myLo, myHi, myDepth);
+				build(myTerms, myWeights, myOrder, myLo, myHi, myNode, myDepth);
+				return;
+			}
+			int first = bucket();
+			// order[myLo, first) holds the terms that end here
+			if (first - myLo > 1)
+				throw new IllegalArgumentException("Duplicate term " + myTerms[myOrder[myLo]]);
+			if (first > myLo) {
+				myNode.isWord = true;
+				myNode.myTermId = myOrder[myLo];
+				myNode.myWeight = myWeights[myOrder[myLo]];
+			}
+			ArrayList<BuildTask> tasks = new ArrayList<BuildTask>();
+			for (int lo = first; lo < myHi;) {
+				char ch = myTerms[myOrder[lo]].charAt(myDepth);
+				int hi = lo + 1;
+				while (hi < myHi && myTerms[myOrder[hi]].charAt(myDepth) == ch)
+					hi++;
+				Node child = new Node(ch, myNode, 0);
+				myNode.appendChild(ch, child);
+				tasks.add(new BuildTask(myTerms, myWeights, myOrder, lo, hi, child, myDepth + 1, myLimit));
+				lo = hi;
+			}
+			invokeAll(tasks);
+			finish(myNode);
+		}
+
+		/**
+		 * Counting sorts order[myLo, myHi) by the character at myDepth, terms
+		 * that end first, and returns where the others start.
+		 */
+		private int bucket() {
+			int[] starts = new int[Character.MAX_VALUE + 3];
+			for (int n = myLo; n < myHi; n++)
+				starts[TermSort.charAt(myTerms[myOrder[n]], myDepth) + 2]++;
+			for (int c = 1; c < starts.length; c++)
+				starts[c] += starts[c - 1];
+			int[] sorted = new int[myHi - myLo];
+			for (int n = myLo; n < myHi; n++)
+				sorted[starts[TermSort.charAt(myTerms[myOrder[n]], myDepth) + 1]++] = myOrder[n];
+			System.arraycopy(sorted, 0, myOrder, myLo, sorted.length);
+			return myLo + starts[0];
+		}
+	}
+
+	/**
+	 * Sets mySubtreeMaxWeight and myBestWord of a node whose children are
+	 * all finished.
+	 */
+	private static void finish(Node node) {
+		double max = node.isWord ? node.myWeight : 0;
+		for (int i = 0; i < node.childCount; i++)
+			max = Math.max(max, node.childNodes[i].mySubtreeMaxWeight);
+		node.mySubtreeMaxWeight = max;
+		node.myBestWord = bestWord(node);
+	}
+
+	/**
+	 * The heaviest word in node's subtree, from its children's myBestWord.
+	 * The node's own word wins ties, then the child with the smallest
+	 * character, so the result does not depend on insertion order.
+	 */
+	private static Node bestWord(Node node) {
+		Node best = null;
+		for (int i = 0; i < node.childCount; i++) {
+			Node candidate = node.childNodes[i].myBestWord;
+			if (candidate != null && (best == null || candidate.myWeight > best.myWeight))
+				best = candidate;
+		}
+		if (node.isWord && (best == null || node.myWeight >= best.myWeight))
+			best = node;
+		return best;
+	}
+
+	/**
+	 * Fills in myTopWords for node and every cached node below it, and returns
+	 * the top word list of node's subtree. Nodes at the depth cutoff search
+	 * their subtree directly; nodes above it merge their children's lists. A
+	 * node whose list would equal its only child's shares the child's array.
+	 */
+	private Node[] cacheTopWords(Node node, int depth) {
+		if (depth < myCacheDepth)
+			for (int i = 0; i < node.childCount; i++)
+				cacheTopWords(node.childNodes[i], depth + 1);
+		node.myTopWords = mergeTopWords(node, depth);
+		return node.myTopWords;
+	}
+
+	/**
+	 * Computes the top word list of node, at the given depth, from the lists
+	 * already cached at its children.
+	 */
+	private Node[] mergeTopWords(Node node, int depth) {
+		if (depth == myCacheDepth) {
+			ArrayList<Node> best = topWords(node, myCacheSize);
+			return best.toArray(new Node[best.size()]);
+		}
+		if (node.childCount == 1 && !node.isWord)
+			return node.childNodes[0].myTopWords;
+		ArrayList<Node> candidates = new ArrayList<Node>();
+		if (node.isWord)
+			candidates.add(node);
+		for (int i = 0; i < node.childCount; i++)
+			Collections.addAll(candidates, node.childNodes[i].myTopWords);
+		Collections.sort(candidates, Collections.reverseOrder());
+		int size = Math.min(myCacheSize, candidates.size());
+		return candidates.subList(0, size).toArray(new Node[size]);
+	}
+
+	/**
+	 * Adds word with the given weight to the trie.
+	 *
+	 * @throws NullPointerException
+	 *             if word is null
+	 * @throws IllegalArgumentException
+	 *             if weight is negative or word is already in the trie
+	 */
+	public void insert(String word, double weight) {
+		if (word == null)
+			throw new NullPointerException();
+		if (weight < 0)
+			throw new IllegalArgumentException("Negative weight " + weight);
+		Node node = locate(word);
+		if (node != null && node.isWord)
+			throw new IllegalArgumentException("Duplicate term " + word);
+		add(word, weight, newTermId(word));
+		repair(locate(word), word.length());
+	}
+
+	/**
+	 * Stores word in the term pool, in a slot freed by remove if there is
+	 * one, and returns its id.
+	 */
+	private int newTermId(String word) {
+		int id;
+		if (myFreeCount > 0) {
+			id = myFreeIds[--myFreeCount];
+		} else {
+			if (myTermCount == myTerms.length)
+				myTerms = Arrays.copyOf(myTerms, Math.max(16, 2 * myTermCount));
+			id = myTermCount++;
+		}
+		myTerms[id] = word;
+		return id;
+	}
+
+	/**
+	 * The word ending at node, read from the term pool.
+	 */
+	private String wordOf(Node node) {
+		return myTerms[node.myTermId];
+	}
+
+	/**
+	 * Removes word from the trie, along with any nodes left without words
+	 * below them.
+	 *
+	 * @return true if word was in the trie
+	 * @throws NullPointerException
+	 *             if word is null
+	 */
+	public boolean remove(String word) {
+		if (word == null)
+			throw new NullPointerException();
+		Node node = locate(word);
+		if (node == null || !node.isWord)
+			return false;
+		node.isWord = false;
+		myTerms[node.myTermId] = null;
+		if (myFreeCount == myFreeIds.length)
+			myFreeIds = Arrays.copyOf(myFreeIds, Math.max(16, 2 * myFreeCount));
+		myFreeIds[myFreeCount++] = node.myTermId;
+		node.myTermId = -1;
+		node.myWeight = -1;
+		int depth = word.length();
+		while (node != myRoot && node.childCount == 0 && !node.isWord) {
+			node.parent.removeChild(word.charAt(depth - 1));
+			node = node.parent;
+			depth--;
+		}
+		repair(node, depth);
+		return true;
+	}
+
+	/**
+	 * Changes the weight of word, which may go up or down.
+	 *
+	 * @return true if word was in the trie, false if it was not and nothing
+	 *         changed
+	 * @throws NullPointerException
+	 *             if word is null
+	 * @throws IllegalArgumentException
+	 *             if weight is negative
+	 */
+	public boolean updateWeight(String word, double weight) {
+		if (word == null)
+			throw new NullPointerException();
+		if (weight < 0)
+			throw new IllegalArgumentException("Negative weight " + weight);
+		Node node = locate(word);
+		if (node == null || !node.isWord)
+			return false;
+		node.myWeight = weight;
+		repair(node, word.length());
+		return true;
+	}
+
+	/**
+	 * Recomputes mySubtreeMaxWeight and myBestWord, and the top word list
+	 * where one is cached, for node at the given depth and each of its
+	 * ancestors, after a word at or below node changed. Each step looks only
+	 * at the children of one node. Stops early once a node is unchanged and
+	 * no cached list needs rebuilding.
+	 */
+	private void repair(Node node, int depth) {
+		for (; node != null; node = node.parent, depth--) {
+			double max = node.isWord ? node.myWeight : 0;
+			for (int i = 0; i < node.childCount; i++)
+				max = Math.max(max, node.childNodes[i].mySubtreeMaxWeight);
+			Node best = bestWord(node);
+			boolean unchanged = max == node.mySubtreeMaxWeight && best == node.myBestWord;
+			node.mySubtreeMaxWeight = max;
+			node.myBestWord = best;
+			if (myCacheSize > 0 && depth <= myCacheDepth)
+				node.myTopWords = mergeTopWords(node, depth);
+			else if (unchanged && myCacheSize == 0)
+				return;
+		}
+	}
+
+	/**
+	 * Returns the node reached by following prefix from the root, or null if
+	 * no word starts with prefix.
+	 */
+	private Node locate(String prefix) {
+		Node current = myRoot;
+		for (int i = 0; i < prefix.length() && current != null; i++)
+			current = current.getChild(prefix.charAt(i));
+		return current;
+	}
+
+	/**
+	 * Returns the (at most) k heaviest word nodes in the subtree rooted at
+	 * start, in descending weight order.
+	 */
+	private ArrayList<Node> topWords(Node start, int k) {
+		ArrayList<Node> arr = new ArrayList<Node>();
+		WordIterator words = new WordIterator(start);
+		while (arr.size() < k && words.hasNext())
+			arr.add(words.next());
+		return arr;
+	}
+
+	/**
+	 * Yields the word nodes in the subtree rooted at start in descending
+	 * weight order, doing only as much of the search as each element needs.
+	 * 
+	 * Subtrees are explored best-first by mySubtreeMaxWeight. A word is held
+	 * back in a second queue until no unexplored subtree could contain a
+	 * heavier word, since a word can weigh less than its own extensions.
+	 */
+	private static class WordIterator implements Iterator<Node> {
+		private final PriorityQueue<Node> mySubtrees = new PriorityQueue<Node>(
+				new Node.ReverseSubtreeMaxWeightComparator());
+		private final PriorityQueue<Node> myWords = new PriorityQueue<Node>(Collections.reverseOrder());
+
+		WordIterator(Node start) {
+			mySubtrees.add(start);
+		}
+
+		public boolean hasNext() {
+			while (true) {
+				if (!myWords.isEmpty()
+						&& (mySubtrees.isEmpty() || myWords.peek().myWeight >= mySubtrees.peek().mySubtreeMaxWeight))
+					return true;
+				if (mySubtrees.isEmpty())
+					return false;
+				Node current = mySubtrees.remove();
+				if (current.isWord)
+					myWords.add(current);
+				// add every child of current to continue searching through trie
+				for (int i = 0; i < current.childCount; i++)
+					mySubtrees.add(current.childNodes[i]);
+			}
+		}
 
-		for (int i = 0; i < terms.length; i++) {
-			if (words.contains(terms[i]))
-				throw new IllegalArgumentException("Duplicate term " + terms[i]);
-			words.add(terms[i]);
-			add(terms[i], weights[i]);
+		public Node next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return myWords.remove();
 		}
-		if (words.size() != terms.length) 
-			throw new IllegalArgumentException("Duplicate terms");
 	}
 
 	/**
@@ -55,7 +526,7 @@ public class TrieAutocomplete implements Autocompletor {
 	 * In adding a word, this method should do the following: Create any
 	 * necessary intermediate nodes if they do not exist. Update the
 	 * subtreeMaxWeight of all nodes in the path from root to the node
-	 * representing word. Set the value of myWord, myWeight, isWord, and
+	 * representing word. Set the value of myTermId, myWeight, isWord, and
 	 * mySubtreeMaxWeight of the node corresponding to the added word to the
 	 * correct values
 	 * 
@@ -64,22 +535,28 @@ public class TrieAutocomplete implements Autocompletor {
 	 * @throws an
 	 *             IllegalArgumentException if weight is negative.
 	 */
-	private void add(String word, double weight) {
+	private void add(String word, double weight, int id) {
 		Node current = myRoot;
 		// find the node (creating new Nodes where necessary) for word
-		// set mySubtreeMaxWeight and myInfo for each current
-		for (char ch : word.toCharArray()) {
+		// and set mySubtreeMaxWeight for each current
+		for (int i = 0; i < word.length(); i++) {
+			char ch = word.charAt(i);
 			if (current.mySubtreeMaxWeight < weight)
 				current.mySubtreeMaxWeight = weight;
-			if (!current.children.containsKey(ch)) // if current's children map does not contain key ch
-				current.children.put(ch, new Node(ch, current, weight));
-			current = current.children.get(ch);
-			current.myInfo = "" + ch;
+			Node child = current.getChild(ch);
+			if (child == null) { // if current has no child for ch yet
+				child = new Node(ch, current, weight);
+				current.addChild(ch, child);
+			}
+			current = child;
 		}
+		// current may already exist as a prefix of lighter words
+		if (current.mySubtreeMaxWeight < weight)
+			current.mySubtreeMaxWeight = weight;
 		// set current to be a word
 		current.isWord = true;
-		// set current's myWord
-		current.myWord = word;
+		// point current at word's slot in the term pool
+		current.myTermId = id;
 		// set current's myWeight
 		current.myWeight = weight;
 	}
@@ -107,31 +584,118 @@ public class TrieAutocomplete implements Autocompletor {
 	public Iterable<String> topMatches(String prefix, int k) {
 		// prefix cannot be null
 		if (prefix == null) throw new NullPointerException();
-		if (k <= 0) return new ArrayList<String>();
-		Node current = myRoot;
-		PriorityQueue<Node> pq = new PriorityQueue<Node>(k, new Node.ReverseSubtreeMaxWeightComparator());
-		ArrayList<String> arr = new ArrayList<>();
-		
 		// navigate current to prefix node
-		for (char ch : prefix.toCharArray()) {
-			if (!current.children.containsKey(ch)) return new ArrayList<String>();
-			current = current.children.get(ch);
-		}
-		pq.add(current);
-		// while pq is not empty and top k matches haven't been found
-		// continue to search through trie for matching words and adding to String ArrayList
-		while (pq.peek() != null && arr.size() != k) {
-			current = pq.remove();
-			if (current.isWord == true)
-				arr.add(current.myWord);
-			// add every child of current to pq to continue searching through trie
-			for (Node child : current.children.values()) {
-				pq.add(child);
-			}
+		return topMatches(locate(prefix), k);
+	}
+
+	/**
+	 * topMatches for the prefix that leads to current, which is null if no
+	 * word starts with that prefix.
+	 */
+	private ArrayList<String> topMatches(Node current, int k) {
+		ArrayList<String> arr = new ArrayList<>();
+		if (k <= 0 || current == null) return arr;
+		if (current.myTopWords != null && k <= myCacheSize) {
+			// the cached list is complete up to myCacheSize words
+			int size = Math.min(k, current.myTopWords.length);
+			for (int i = 0; i < size; i++)
+				arr.add(wordOf(current.myTopWords[i]));
+			return arr;
 		}
+		for (Node word : topWords(current, k))
+			arr.add(wordOf(word));
 		return arr;
 	}
 
+	/**
+	 * Fills buffer with the k heaviest words starting with prefix and their
+	 * weights, taken from the nodes topMatches visits, and returns it.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public WeightedMatches topMatchesWithWeights(String prefix, int k, WeightedMatches buffer) {
+		if (prefix == null) throw new NullPointerException();
+		return topMatchesWithWeights(locate(prefix), k, buffer);
+	}
+
+	private WeightedMatches topMatchesWithWeights(Node current, int k, WeightedMatches buffer) {
+		buffer.clear();
+		if (k <= 0 || current == null) return buffer;
+		if (current.myTopWords != null && k <= myCacheSize) {
+			int size = Math.min(k, current.myTopWords.length);
+			for (int i = 0; i < size; i++)
+				buffer.add(wordOf(current.myTopWords[i]), current.myTopWords[i].myWeight);
+			return buffer;
+		}
+		WordIterator words = new WordIterator(current);
+		while (buffer.size() < k && words.hasNext()) {
+			Node word = words.next();
+			buffer.add(wordOf(word), word.myWeight);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns every word starting with prefix in descending weight order,
+	 * found lazily by the same best-first search topMatches uses. Where the
+	 * prefix node caches a top word list, that list is returned first and the
+	 * search only starts if more words are wanted. The iterator must not be
+	 * used after the trie is modified.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 */
+	public Iterator<String> matchIterator(String prefix) {
+		if (prefix == null) throw new NullPointerException();
+		final Node start = locate(prefix);
+		if (start == null) return Collections.<String>emptyIterator();
+		final Node[] cached = start.myTopWords == null ? new Node[0] : start.myTopWords;
+		return new Iterator<String>() {
+			private int myNext;
+			private WordIterator mySearch;
+			private int mySkipped;
+			private Node myPending;
+
+			public boolean hasNext() {
+				if (myNext < cached.length || myPending != null)
+					return true;
+				// a list shorter than myCacheSize holds every word in the subtree
+				if (cached.length > 0 && cached.length < myCacheSize)
+					return false;
+				if (mySearch == null)
+					mySearch = new WordIterator(start);
+				while (mySearch.hasNext()) {
+					Node word = mySearch.next();
+					if (mySkipped < cached.length && contains(cached, word)) {
+						mySkipped++;
+						continue;
+					}
+					myPending = word;
+					return true;
+				}
+				return false;
+			}
+
+			public String next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				if (myNext < cached.length)
+					return wordOf(cached[myNext++]);
+				Node word = myPending;
+				myPending = null;
+				return wordOf(word);
+			}
+		};
+	}
+
+	private static boolean contains(Node[] nodes, Node node) {
+		for (Node n : nodes)
+			if (n == node)
+				return true;
+		return false;
+	}
+
 	/**
 	 * Given a prefix, returns the largest-weight word in the trie starting with
 	 * that prefix.
@@ -145,22 +709,68 @@ public class TrieAutocomplete implements Autocompletor {
 	 */
 	public String topMatch(String prefix) {
 		if (prefix == null) throw new NullPointerException();
-		Node current = myRoot;
-		// loop through characters in prefix to get to node corresponding to prefix
-		for (char ch : prefix.toCharArray()) {
-			if (!current.children.containsKey(ch)) return "";
-			current = current.children.get(ch);
-		}
-		// navigate down tree until mySubtreeMaxWeight is equal to myWeight
-		while (current.mySubtreeMaxWeight != current.myWeight) {
-			for (char x : current.children.keySet()) {
-				if (current.mySubtreeMaxWeight == current.children.get(x).mySubtreeMaxWeight) {
-					current = current.children.get(x);
-					break;
-				}
-			}
+		// follow characters in prefix to get to node corresponding to prefix
+		return topMatch(locate(prefix));
+	}
+
+	private String topMatch(Node current) {
+		if (current == null || current.myBestWord == null) return "";
+		// the heaviest word below the prefix is kept on the node itself
+		return wordOf(current.myBestWord);
+	}
+
+	/**
+	 * Returns a session that keeps the node reached by each prefix of its
+	 * text on a stack, so typing a character is one child lookup and
+	 * backspace is a pop.
+	 */
+	public AutocompleteSession newSession() {
+		return new TrieSession();
+	}
+
+	/**
+	 * myPath.get(i) is the node reached by the first i characters of the
+	 * text. Once the text leaves the trie, the characters past that point
+	 * are only counted in myMissing.
+	 */
+	private class TrieSession extends AutocompleteSession {
+		private final ArrayList<Node> myPath = new ArrayList<Node>();
+		private int myMissing;
+
+		TrieSession() {
+			myPath.add(myRoot);
+		}
+
+		private Node current() {
+			return myMissing > 0 ? null : myPath.get(myPath.size() - 1);
+		}
+
+		protected void pushed(char ch) {
+			Node child = myMissing > 0 ? null : current().getChild(ch);
+			if (child == null)
+				myMissing++;
+			else
+				myPath.add(child);
+		}
+
+		protected void popped() {
+			if (myMissing > 0)
+				myMissing--;
+			else
+				myPath.remove(myPath.size() - 1);
+		}
+
+		public Iterable<String> topMatches(int k) {
+			return TrieAutocomplete.this.topMatches(current(), k);
+		}
+
+		public String topMatch() {
+			return TrieAutocomplete.this.topMatch(current());
+		}
+
+		public WeightedMatches topMatchesWithWeights(int k, WeightedMatches buffer) {
+			return TrieAutocomplete.this.topMatchesWithWeights(current(), k, buffer);
 		}
-		return current.myWord;
 	}
 
 	/**
@@ -168,19 +778,17 @@ public class TrieAutocomplete implements Autocompletor {
 	 * return 0.0
 	 */
 	public double weightOf(String term) {
-		Node current = myRoot;
-		// loop through every char in term and check if that char is in current's children
-		for (char ch : term.toCharArray()) {
-			// if char is not in current's children, return 0.0
-			if (!current.children.containsKey(ch)) return 0.0;
-			else current = current.children.get(ch);
-		}
-		return current.myWeight;
+		// follow every char in term; if one is missing, return 0.0
+		Node current = locate(term);
+		if (current == null) return 0.0;
+		// a prefix of a word is not itself a term
+		return current.isWord ? current.myWeight : 0.0;
 	}
 
 	/**
-	 * Optional: Returns the highest weighted matches within k edit distance of
-	 * the word. If the word is in the dictionary, then return an empty list.
+	 * Returns the highest weighted matches within dist edits (insertions,
+	 * deletions or substitutions) of the word. If the word is in the
+	 * dictionary, then return an empty list.
 	 * 
 	 * @param word
 	 *            The word to spell-check
@@ -189,8 +797,114 @@ public class TrieAutocomplete implements Autocompletor {
 	 * @param k
 	 *            Number of results to return
 	 * @return Iterable in descending weight order of the matches
+	 * @throws NullPointerException
+	 *             if word is null
+	 * @throws IllegalArgumentException
+	 *             if dist is negative
 	 */
 	public Iterable<String> spellCheck(String word, int dist, int k) {
-		return null;
+		if (word == null) throw new NullPointerException();
+		if (dist < 0) throw new IllegalArgumentException("Negative distance " + dist);
+		Node node = locate(word);
+		if (node != null && node.isWord)
+			return new ArrayList<String>();
+		return fuzzySearch(word, dist, k, false);
+	}
+
+	/**
+	 * Returns the k heaviest words that start with some string within dist
+	 * edits of prefix, in descending weight order, so that a prefix with a
+	 * typo still finds completions. Words that start with prefix itself are
+	 * included.
+	 * 
+	 * @throws NullPointerException
+	 *             if prefix is null
+	 * @throws IllegalArgumentException
+	 *             if dist is negative
+	 */
+	public Iterable<String> fuzzyTopMatches(String prefix, int dist, int k) {
+		if (prefix == null) throw new NullPointerException();
+		if (dist < 0) throw new IllegalArgumentException("Negative distance " + dist);
+		return fuzzySearch(prefix, dist, k, true);
+	}
+
+	/**
+	 * Branch-and-bound search for the k heaviest words within dist edits of
+	 * target, or, if asPrefix, with a prefix within dist edits of target.
+	 * 
+	 * Each visited node carries the row of the Levenshtein table between
+	 * target and the string the node spells, computed from its parent's row
+	 * in O(target length). A node whose row minimum exceeds dist cannot lead
+	 * to a match, so its subtree is skipped. The rest are explored best-first
+	 * by mySubtreeMaxWeight and a matching word is emitted once no pending
+	 * subtree could hold a heavier one, so the search stops as soon as k
+	 * words are certain. In prefix mode a node whose string is itself within
+	 * dist of target matches its whole subtree, which is then searched
+	 * without rows.
+	 */
+	private ArrayList<String> fuzzySearch(String target, int dist, int k, boolean asPrefix) {
+		ArrayList<String> arr = new ArrayList<String>();
+		if (k <= 0) return arr;
+		int m = target.length();
+		int[] first = new int[m + 1];
+		for (int j = 0; j <= m; j++)
+			first[j] = j;
+		PriorityQueue<FuzzyState> states = new PriorityQueue<FuzzyState>();
+		PriorityQueue<Node> words = new PriorityQueue<Node>(Collections.reverseOrder());
+		states.add(new FuzzyState(myRoot, first));
+		while (arr.size() < k) {
+			if (!words.isEmpty()
+					&& (states.isEmpty() || words.peek().myWeight >= states.peek().myNode.mySubtreeMaxWeight)) {
+				arr.add(wordOf(words.remove()));
+				continue;
+			}
+			if (states.isEmpty())
+				break;
+			FuzzyState state = states.remove();
+			Node node = state.myNode;
+			int[] row = state.myRow;
+			boolean matched = row == null || (asPrefix && row[m] <= dist);
+			if (node.isWord && (matched || row[m] <= dist))
+				words.add(node);
+			for (int i = 0; i < node.childCount; i++) {
+				Node child = node.childNodes[i];
+				if (matched) {
+					states.add(new FuzzyState(child, null));
+					continue;
+				}
+				char ch = node.childKeys[i];
+				int[] next = new int[m + 1];
+				next[0] = row[0] + 1;
+				int min = next[0];
+				for (int j = 1; j <= m; j++) {
+					int substitute = row[j - 1] + (target.charAt(j - 1) == ch ? 0 : 1);
+					next[j] = Math.min(substitute, Math.min(row[j], next[j - 1]) + 1);
+					min = Math.min(min, next[j]);
+				}
+				if (min <= dist)
+					states.add(new FuzzyState(child, next));
+			}
+		}
+		return arr;
+	}
+
+	/**
+	 * A node reached by fuzzySearch with its Levenshtein row, or a null row
+	 * once the node lies inside a matched subtree. Ordered heaviest subtree
+	 * first.
+	 */
+	private static class FuzzyState implements Comparable<FuzzyState> {
+		final Node myNode;
+		final int[] myRow;
+
+		FuzzyState(Node node, int[] row) {
+			myNode = node;
+			myRow = row;
+		}
+
+		@Override
+		public int compareTo(FuzzyState o) {
+			return Double.compare(o.myNode.mySubtreeMaxWeight, myNode.mySubtreeMaxWeight);
+		}
 	}
 }
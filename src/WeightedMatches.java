@@ -0,0 +1,101 @@
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of terms and their weights, as filled in by
+ * Autocompletor.topMatchesWithWeights in descending weight order. Terms and
+ * weights are kept in parallel arrays that only grow, so a caller that
+ * passes the same buffer to every query, such as the GUI on each keystroke,
+ * allocates nothing for results once the buffer is large enough.
+ *
+ * A buffer is not thread-safe; each thread should use its own.
+ */
+public class WeightedMatches {
+
+	private String[] myTerms;
+	private double[] myWeights;
+	private int mySize;
+
+	/**
+	 * Creates an empty buffer.
+	 */
+	public WeightedMatches() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty buffer with room for capacity matches before it grows.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if capacity is negative
+	 */
+	public WeightedMatches(int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("Negative capacity " + capacity);
+		myTerms = new String[capacity];
+		myWeights = new double[capacity];
+	}
+
+	/**
+	 * Removes every match, keeping the arrays for reuse.
+	 */
+	public void clear() {
+		Arrays.fill(myTerms, 0, mySize, null);
+		mySize = 0;
+	}
+
+	/**
+	 * Appends term with the given weight.
+	 */
+	public void add(String term, double weight) {
+		if (mySize == myTerms.length) {
+			int capacity = Math.max(16, 2 * mySize);
+			myTerms = Arrays.copyOf(myTerms, capacity);
+			myWeights = Arrays.copyOf(myWeights, capacity);
+		}
+		myTerms[mySize] = term;
+		myWeights[mySize] = weight;
+		mySize++;
+	}
+
+	/**
+	 * Number of matches in the buffer.
+	 */
+	public int size() {
+		return mySize;
+	}
+
+	/**
+	 * Returns the i-th match, the heaviest being 0.
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if i is not less than size()
+	 */
+	public String term(int i) {
+		if (i < 0 || i >= mySize)
+			throw new IndexOutOfBoundsException("Index " + i + " of " + mySize);
+		return myTerms[i];
+	}
+
+	/**
+	 * Returns the weight of term(i).
+	 *
+	 * @throws IndexOutOfBoundsException
+	 *             if i is not less than size()
+	 */
+	public double weight(int i) {
+		if (i < 0 || i >= mySize)
+			throw new IndexOutOfBoundsException("Index " + i + " of " + mySize);
+		return myWeights[i];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder out = new StringBuilder("[");
+		for (int i = 0; i < mySize; i++) {
+			if (i > 0)
+				out.append(", ");
+			out.append(myTerms[i]).append(':').append(myWeights[i]);
+		}
+		return out.append(']').toString();
+	}
+}